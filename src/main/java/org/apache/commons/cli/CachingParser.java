@@ -0,0 +1,413 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A parser remembering the command lines it has parsed, for applications
+ * parsing the same command lines over and over.
+ * <p>
+ * The results of a {@link DefaultParser} are kept in a bounded cache,
+ * keyed by the options, the arguments and the <code>stopAtNonOption</code>
+ * flag, the least recently used result being evicted first. The options
+ * are identified by their {@link Options#compile() compiled} form, which is
+ * replaced when an option or a group is added, and by the version of the
+ * option definitions, which changes when an attribute read by the parser
+ * is modified on one of its options or groups. A changed definition is
+ * thus never served a result parsed against the previous one.
+ * <p>
+ * The command lines returned are read-only and shared by all the callers
+ * parsing the same arguments: the methods changing them throw an
+ * UnsupportedOperationException. When several threads parse the same
+ * arguments while they are not cached yet, a single one parses them and
+ * the others wait for its result. Failed parses are not cached, each
+ * waiting thread receives the exception of the parse. Parses with default
+ * properties are not cached either.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @since 1.5
+ */
+public class CachingParser implements CommandLineParser
+{
+    /** The key of a cached command line. */
+    private static final class Key
+    {
+        final CompiledOptions options;
+        final long version;
+        final boolean stopAtNonOption;
+        final String[] arguments;
+        final int hash;
+
+        Key(CompiledOptions options, long version, boolean stopAtNonOption, String[] arguments)
+        {
+            this.options = options;
+            this.version = version;
+            this.stopAtNonOption = stopAtNonOption;
+            this.arguments = arguments;
+            this.hash = (31 * System.identityHashCode(options) + Arrays.hashCode(arguments)) * 31 + (stopAtNonOption ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && options == other.options && version == other.version
+                    && stopAtNonOption == other.stopAtNonOption && Arrays.equals(arguments, other.arguments);
+        }
+    }
+
+    /** The parser computing the command lines not cached. */
+    private final DefaultParser parser;
+
+    /** The maximum number of command lines kept. */
+    private final int maximumSize;
+
+    /** The cached parses by key, in access order, guarded by itself; a parse may still be running. */
+    private final Map<Key, FutureTask<CommandLine>> cache;
+
+    /** The number of parses answered by the cache, guarded by {@link #cache}. */
+    private long hits;
+
+    /** The number of parses done by the underlying parser, guarded by {@link #cache}. */
+    private long misses;
+
+    /** The number of command lines evicted from the cache, guarded by {@link #cache}. */
+    private long evictions;
+
+    /**
+     * Creates a parser caching the results of a {@link DefaultParser}
+     * with partial matching enabled.
+     *
+     * @param maximumSize the maximum number of command lines kept
+     */
+    public CachingParser(int maximumSize)
+    {
+        this(new DefaultParser(), maximumSize);
+    }
+
+    /**
+     * Creates a parser caching the results of the specified parser.
+     *
+     * @param parser the parser computing the command lines not cached
+     * @param maximumSize the maximum number of command lines kept
+     */
+    public CachingParser(DefaultParser parser, final int maximumSize)
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("The maximum size must be positive: " + maximumSize);
+        }
+        this.parser = parser;
+        this.maximumSize = maximumSize;
+        this.cache = new LinkedHashMap<Key, FutureTask<CommandLine>>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FutureTask<CommandLine>> eldest)
+            {
+                if (size() > maximumSize)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public CommandLine parse(Options options, String[] arguments) throws ParseException
+    {
+        return parse(options, arguments, null, false);
+    }
+
+    /**
+     * Parse the arguments according to the specified options and properties.
+     * The command line is only cached when there are no properties.
+     *
+     * @param options    the specified Options
+     * @param arguments  the command line arguments
+     * @param properties command line option name-value pairs
+     * @return the list of atomic option and value tokens
+     *
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     */
+    public CommandLine parse(Options options, String[] arguments, Properties properties) throws ParseException
+    {
+        return parse(options, arguments, properties, false);
+    }
+
+    @Override
+    public CommandLine parse(Options options, String[] arguments, boolean stopAtNonOption) throws ParseException
+    {
+        return parse(options, arguments, null, stopAtNonOption);
+    }
+
+    /**
+     * Parse the arguments according to the specified options and properties.
+     * The command line is only cached when there are no properties.
+     *
+     * @param options         the specified Options
+     * @param arguments       the command line arguments
+     * @param properties      command line option name-value pairs
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the 
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     *
+     * @return the list of atomic option and value tokens
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     */
+    public CommandLine parse(Options options, String[] arguments, Properties properties, boolean stopAtNonOption)
+            throws ParseException
+    {
+        if (properties != null)
+        {
+            return parser.parse(options, arguments, properties, stopAtNonOption);
+        }
+        return parse(options.compile(), arguments, stopAtNonOption);
+    }
+
+    /**
+     * Parses the arguments according to the specified compiled options, or
+     * returns the command line cached for them.
+     *
+     * @param options         the compiled options
+     * @param arguments       the command line arguments
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the 
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     * @return the read-only command line
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     */
+    public CommandLine parse(final CompiledOptions options, String[] arguments, final boolean stopAtNonOption)
+            throws ParseException
+    {
+        // the arguments of the caller are only copied when they are cached
+        Key key = new Key(options, options.definitionVersion(), stopAtNonOption,
+                arguments == null ? new String[0] : arguments);
+
+        FutureTask<CommandLine> task;
+        boolean owner = false;
+        synchronized (cache)
+        {
+            task = cache.get(key);
+            if (task != null)
+            {
+                hits++;
+            }
+            else
+            {
+                misses++;
+                owner = true;
+                key = new Key(options, key.version, stopAtNonOption, key.arguments.clone());
+                final String[] args = key.arguments;
+                task = new FutureTask<CommandLine>(new Callable<CommandLine>()
+                {
+                    @Override
+                    public CommandLine call() throws ParseException
+                    {
+                        return parser.parse(options, args, null, stopAtNonOption).freeze();
+                    }
+                });
+                cache.put(key, task);
+            }
+        }
+
+        if (owner)
+        {
+            task.run();
+        }
+
+        try
+        {
+            return get(task);
+        }
+        catch (ExecutionException e)
+        {
+            if (owner)
+            {
+                // the failed parse is not kept, the next call for these arguments parses them again
+                synchronized (cache)
+                {
+                    if (cache.get(key) == task)
+                    {
+                        cache.remove(key);
+                    }
+                }
+            }
+
+            Throwable cause = e.getCause();
+            if (cause instanceof ParseException)
+            {
+                throw (ParseException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Waits for the result of a parse, without giving up when interrupted.
+     */
+    private static CommandLine get(FutureTask<CommandLine> task) throws ExecutionException
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return task.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of parses answered from the cache, including the
+     * parses that waited for another thread parsing the same arguments.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount()
+    {
+        synchronized (cache)
+        {
+            return hits;
+        }
+    }
+
+    /**
+     * Returns the number of parses that were not cached and were done by
+     * the underlying parser.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount()
+    {
+        synchronized (cache)
+        {
+            return misses;
+        }
+    }
+
+    /**
+     * Returns the number of command lines evicted to keep the cache within
+     * its maximum size.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount()
+    {
+        synchronized (cache)
+        {
+            return evictions;
+        }
+    }
+
+    /**
+     * Returns the ratio of the parses answered from the cache.
+     *
+     * @return the hit rate, between 0 and 1, or 0 if nothing was parsed yet
+     */
+    public double getHitRate()
+    {
+        synchronized (cache)
+        {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    /**
+     * Returns the number of command lines cached.
+     *
+     * @return the size of the cache
+     */
+    public int size()
+    {
+        synchronized (cache)
+        {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of command lines cached.
+     *
+     * @return the maximum size of the cache
+     */
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * Removes all the cached command lines. The statistics are kept.
+     */
+    public void clear()
+    {
+        synchronized (cache)
+        {
+            cache.clear();
+        }
+    }
+}
@@ -18,12 +18,16 @@
 package org.apache.commons.cli;
 
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.RandomAccess;
 
 /**
  * Represents list of arguments parsed against a {@link Options} descriptor.
@@ -37,14 +41,32 @@ import java.util.Properties;
  */
 public class CommandLine implements Serializable
 {
-    /** The serial version UID. */
-    private static final long serialVersionUID = 1L;
+    /** The serial version UID, changed with the serialized form in 1.5. */
+    private static final long serialVersionUID = 2L;
 
-    /** the unrecognized options/arguments */
-    private final List<String> args = new LinkedList<String>();
+    /** the unrecognized options/arguments, in args[0..argCount) */
+    private String[] args = new String[8];
 
-    /** the processed options */
-    private final List<Option> options = new ArrayList<Option>();
+    /** the number of unrecognized options/arguments */
+    private int argCount;
+
+    /** the list view of the unrecognized options/arguments, created on demand */
+    private transient List<String> argList;
+
+    /** the occurrences of the processed options */
+    private final List<Occurrence> options = new ArrayList<Occurrence>();
+
+    /** the occurrences grouped by option, rebuilt from {@link #options} when null */
+    private transient Map<Option, Entry> entries;
+
+    /** the entry of the first option occurring under each short or long name */
+    private transient Map<String, Entry> names;
+
+    /** whether a name is used by several options, e.g. as the short name of one and the long name of another */
+    private transient boolean sharedNames;
+
+    /** whether this command line is read-only and may be shared, see {@link #freeze()} */
+    private boolean frozen;
 
     /**
      * Creates a command line.
@@ -63,7 +85,7 @@ public class CommandLine implements Serializable
      */
     public boolean hasOption( Option opt)
     {
-        return options.contains(opt);
+        return entries().containsKey(opt);
     }
 
     /**
@@ -153,10 +175,22 @@ public class CommandLine implements Serializable
         {
             return null;
         }
-         List<String>values = getOptionValues(option);
-         if (!values.isEmpty()){
-          return values.get(0);
-         }
+        Entry entry = entries().get(option);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (entry.shared)
+        {
+            return entry.values == null || entry.values.isEmpty() ? null : entry.values.get(0);
+        }
+        for ( Occurrence occurrence : entry.occurrences)
+        {
+            if (occurrence.valueCount() > 0)
+            {
+                return occurrence.values().get(0);
+            }
+        }
         return null;
     }
 
@@ -193,15 +227,22 @@ public class CommandLine implements Serializable
      */
     public List<String> getOptionValues( Option option)
     {
-         List<String> values = new ArrayList<>();
-        for ( Option processedOption : options)
+        Entry entry = entries().get(option);
+        if (entry == null)
         {
-            if (processedOption.equals(option))
-            {
-                values.addAll(processedOption.getValuesList());
-            }
+            return new ArrayList<>();
+        }
+        if (entry.shared)
+        {
+            // the values of all the occurrences, copied at once
+            return entry.values == null ? new ArrayList<String>() : new ArrayList<>(entry.values);
         }
 
+        List<String> values = new ArrayList<>();
+        for ( Occurrence occurrence : entry.occurrences)
+        {
+            values.addAll(occurrence.values());
+        }
         return values;
     }
 
@@ -225,21 +266,9 @@ public class CommandLine implements Serializable
      */
     private Option resolveOption(String opt)
     {
-        opt = Util.stripLeadingHyphens(opt);
-        for ( Option option : options)
-        {
-            if (opt.equals(option.getOpt()))
-            {
-                return option;
-            }
-
-            if (opt.equals(option.getLongOpt()))
-            {
-                return option;
-            }
-
-        }
-        return null;
+        entries();
+        Entry entry = names.get(Util.stripLeadingHyphens(opt));
+        return entry == null ? null : entry.option;
     }
 
     /**
@@ -315,21 +344,12 @@ public class CommandLine implements Serializable
     {
          Properties props = new Properties();
 
-        for ( Option processedOption : options)
+        Entry entry = entries().get(option);
+        if (entry != null)
         {
-            if (processedOption.equals(option))
+            for ( Occurrence occurrence : entry.occurrences)
             {
-                 List<String> values = processedOption.getValuesList();
-                if (values.size() >= 2)
-                {
-                    // use the first 2 arguments as the key/value pair
-                    props.put(values.get(0), values.get(1));
-                }
-                else if (values.size() == 1)
-                {
-                    // no explicit value, handle it as a boolean
-                    props.put(values.get(0), "true");
-                }
+                addProperty(props, occurrence);
             }
         }
 
@@ -353,27 +373,52 @@ public class CommandLine implements Serializable
     {
          Properties props = new Properties();
 
-        for ( Option option : options)
+        entries();
+        if (sharedNames)
         {
-            if (opt.equals(option.getOpt()) || opt.equals(option.getLongOpt()))
+            // several options answer to the name, keep their occurrences in command line order
+            for ( Occurrence occurrence : options)
             {
-                 List<String> values = option.getValuesList();
-                if (values.size() >= 2)
-                {
-                    // use the first 2 arguments as the key/value pair
-                    props.put(values.get(0), values.get(1));
-                }
-                else if (values.size() == 1)
+                if (opt.equals(occurrence.option.getOpt()) || opt.equals(occurrence.option.getLongOpt()))
                 {
-                    // no explicit value, handle it as a boolean
-                    props.put(values.get(0), "true");
+                    addProperty(props, occurrence);
                 }
             }
         }
+        else if (names.containsKey(opt))
+        {
+            for ( Occurrence occurrence : names.get(opt).occurrences)
+            {
+                addProperty(props, occurrence);
+            }
+        }
 
         return props;
     }
 
+    /**
+     * Adds the property defined by the values of an occurrence of an option.
+     *
+     * @param props the properties
+     * @param occurrence the occurrence
+     */
+    private void addProperty( Properties props,  Occurrence occurrence)
+    {
+        List<String> values = occurrence.valueList();
+        int start = occurrence.start();
+        int count = occurrence.valueCount();
+        if (count >= 2)
+        {
+            // use the first 2 arguments as the key/value pair
+            props.put(values.get(start), values.get(start + 1));
+        }
+        else if (count == 1)
+        {
+            // no explicit value, handle it as a boolean
+            props.put(values.get(start), "true");
+        }
+    }
+
     /**
      * Retrieve any left-over non-recognized options and arguments
      *
@@ -381,21 +426,74 @@ public class CommandLine implements Serializable
      */
     public String[] getArgs()
     {
-         String[] answer = new String[args.size()];
-
-        args.toArray(answer);
-
-        return answer;
+        return Arrays.copyOf(args, argCount);
     }
 
     /**
-     * Retrieve any left-over non-recognized options and arguments
+     * Retrieve any left-over non-recognized options and arguments. The list
+     * is backed by this command line: it is not a copy, and changes made
+     * to it are visible in the command line.
      *
      * @return remaining items passed in but not parsed as a <code>List</code>.
      */
     public List<String> getArgList()
     {
-        return args;
+        if (frozen)
+        {
+            return getArgListView();
+        }
+        if (argList == null)
+        {
+            argList = new ArgList();
+        }
+        return argList;
+    }
+
+    /**
+     * Returns a read-only view of the left-over non-recognized options and
+     * arguments. Nothing is copied.
+     *
+     * @return remaining items passed in but not parsed as an unmodifiable <code>List</code>.
+     * @since 1.5
+     */
+    public List<String> getArgListView()
+    {
+        if (argList == null)
+        {
+            argList = new ArgList();
+        }
+        return Collections.unmodifiableList(argList);
+    }
+
+    /**
+     * Returns the number of left-over non-recognized options and arguments.
+     *
+     * @return the number of remaining items passed in but not parsed.
+     * @since 1.5
+     */
+    public int getArgCount()
+    {
+        return argCount;
+    }
+
+    /**
+     * Retrieve a left-over non-recognized option or argument, without
+     * copying the others. Looping over the indexes below
+     * {@link #getArgCount()} doesn't allocate anything.
+     *
+     * @param index the position of the argument, starting at 0.
+     * @return the argument at the specified position.
+     * @throws IndexOutOfBoundsException if the index is negative or not
+     * below {@link #getArgCount()}.
+     * @since 1.5
+     */
+    public String getArg( int index)
+    {
+        if (index < 0 || index >= argCount)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + argCount);
+        }
+        return args[index];
     }
 
     /**
@@ -427,7 +525,35 @@ public class CommandLine implements Serializable
      */
     protected void addArg( String arg)
     {
-        args.add(arg);
+        checkNotFrozen();
+        if (argCount == args.length)
+        {
+            args = Arrays.copyOf(args, 2 * argCount);
+        }
+        args[argCount++] = arg;
+    }
+
+    /**
+     * Add a range of left-over unrecognized options and arguments at once.
+     *
+     * @param arguments the array holding the arguments to add
+     * @param from the position of the first argument to add
+     * @param to the position after the last argument to add
+     */
+    void addArgs( String[] arguments,  int from,  int to)
+    {
+        checkNotFrozen();
+        int count = to - from;
+        if (count <= 0)
+        {
+            return;
+        }
+        if (argCount + count > args.length)
+        {
+            args = Arrays.copyOf(args, Math.max(2 * args.length, argCount + count));
+        }
+        System.arraycopy(arguments, from, args, argCount, count);
+        argCount += count;
     }
 
     /**
@@ -437,7 +563,141 @@ public class CommandLine implements Serializable
      */
     protected void addOption( Option opt)
     {
-        options.add(opt);
+        addOccurrence(Occurrence.of(opt));
+    }
+
+    /**
+     * Makes this command line read-only, so that it can be shared between
+     * threads: the methods changing it throw an
+     * UnsupportedOperationException, {@link #getArgList()} returns a
+     * read-only list and the options returned are new copies on each call.
+     * The index of the options is built at once, since it can't be built
+     * lazily by concurrent readers.
+     *
+     * @return this command line
+     */
+    CommandLine freeze()
+    {
+        entries();
+        if (argList == null)
+        {
+            argList = new ArgList();
+        }
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Throws an UnsupportedOperationException if this command line is read-only.
+     */
+    private void checkNotFrozen()
+    {
+        if (frozen)
+        {
+            throw new UnsupportedOperationException("The command line is read-only");
+        }
+    }
+
+    /**
+     * Removes all the options and arguments, keeping the storage allocated
+     * for them, so that a parse can refill the command line.
+     */
+    void clear()
+    {
+        checkNotFrozen();
+        options.clear();
+        Arrays.fill(args, 0, argCount, null);
+        argCount = 0;
+        entries = null;
+        names = null;
+        sharedNames = false;
+    }
+
+    /**
+     * Add an occurrence of an option to the command line.
+     *
+     * @param occurrence the occurrence recorded by the parser.
+     */
+    void addOccurrence( Occurrence occurrence)
+    {
+        checkNotFrozen();
+        options.add(occurrence);
+        if (entries != null)
+        {
+            index(occurrence);
+        }
+    }
+
+    /**
+     * Returns the occurrences grouped by option, building the index if
+     * needed. The index is kept up to date as occurrences are added.
+     */
+    private Map<Option, Entry> entries()
+    {
+        if (entries == null)
+        {
+            entries = new HashMap<Option, Entry>();
+            names = new HashMap<String, Entry>();
+            sharedNames = false;
+            for ( Occurrence occurrence : options)
+            {
+                index(occurrence);
+            }
+
+            // a shared value list may still hold the values of a removed occurrence
+            for ( Entry entry : entries.values())
+            {
+                int count = 0;
+                for ( Occurrence occurrence : entry.occurrences)
+                {
+                    count += occurrence.valueCount();
+                }
+                entry.shared &= count == (entry.values == null ? 0 : entry.values.size());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Adds an occurrence to the index.
+     */
+    private void index( Occurrence occurrence)
+    {
+        Entry entry = entries.get(occurrence.option);
+        if (entry == null)
+        {
+            entry = new Entry(occurrence.option, occurrence.valueList());
+            entries.put(occurrence.option, entry);
+            name(occurrence.option.getOpt(), entry);
+            name(occurrence.option.getLongOpt(), entry);
+        }
+        else if (occurrence.valueList() != entry.values)
+        {
+            entry.shared = false;
+        }
+        entry.occurrences.add(occurrence);
+    }
+
+    /**
+     * Registers a name of an option, unless an option that occurred
+     * before already uses it.
+     */
+    private void name( String name,  Entry entry)
+    {
+        if (name == null)
+        {
+            return;
+        }
+
+        Entry previous = names.get(name);
+        if (previous == null)
+        {
+            names.put(name, entry);
+        }
+        else if (previous != entry)
+        {
+            sharedNames = true;
+        }
     }
 
     /**
@@ -448,7 +708,30 @@ public class CommandLine implements Serializable
      */
     public Iterator<Option> iterator()
     {
-        return options.iterator();
+        final Iterator<Occurrence> occurrences = options.iterator();
+        return new Iterator<Option>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return occurrences.hasNext();
+            }
+
+            @Override
+            public Option next()
+            {
+                Occurrence occurrence = occurrences.next();
+                return frozen ? occurrence.copyOption() : occurrence.toOption();
+            }
+
+            @Override
+            public void remove()
+            {
+                checkNotFrozen();
+                occurrences.remove();
+                entries = null;
+            }
+        };
     }
 
     /**
@@ -458,13 +741,87 @@ public class CommandLine implements Serializable
      */
     public Option[] getOptions()
     {
-         Collection<Option> processed = options;
+        Option[] optionsArray = new Option[options.size()];
+        for (int i = 0; i < optionsArray.length; i++)
+        {
+            optionsArray[i] = frozen ? options.get(i).copyOption() : options.get(i).toOption();
+        }
+
+        return optionsArray;
+    }
 
-        // reinitialise array
-         Option[] optionsArray = new Option[processed.size()];
+    /**
+     * The list view of the unrecognized options/arguments, reading and
+     * writing the array of the command line.
+     */
+    private final class ArgList extends AbstractList<String> implements RandomAccess
+    {
+        @Override
+        public String get( int index)
+        {
+            return getArg(index);
+        }
 
-        // return the array
-        return processed.toArray(optionsArray);
+        @Override
+        public int size()
+        {
+            return argCount;
+        }
+
+        @Override
+        public String set( int index,  String element)
+        {
+            String previous = getArg(index);
+            args[index] = element;
+            return previous;
+        }
+
+        @Override
+        public void add( int index,  String element)
+        {
+            if (index < 0 || index > argCount)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + argCount);
+            }
+            addArg(element);
+            System.arraycopy(args, index, args, index + 1, argCount - 1 - index);
+            args[index] = element;
+            modCount++;
+        }
+
+        @Override
+        public String remove( int index)
+        {
+            String previous = getArg(index);
+            System.arraycopy(args, index + 1, args, index, argCount - 1 - index);
+            args[--argCount] = null;
+            modCount++;
+            return previous;
+        }
+    }
+
+    /**
+     * The occurrences of an option, as compared by {@link Option#equals(Object)}.
+     */
+    private static final class Entry
+    {
+        /** the option, as it first occurred */
+        final Option option;
+
+        /** the occurrences of the option, in command line order */
+        final List<Occurrence> occurrences = new ArrayList<Occurrence>(1);
+
+        /** the value list of the first occurrence */
+        final List<String> values;
+
+        /** whether {@link #values} holds exactly the values of all the occurrences, in order */
+        boolean shared = true;
+
+        Entry(Option option, List<String> values)
+        {
+            this.option = option;
+            this.values = values;
+        }
     }
 
     /**
@@ -0,0 +1,1012 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A snapshot of the structure of an {@link Options} definition.
+ * <p>
+ * The snapshot freezes the option names, groups and required options into
+ * flat tables indexed by a dense ordinal, so that a parser can resolve a
+ * token with a few array reads instead of repeated map probes. These tables
+ * never change once built and may be shared between threads; options added
+ * to the source {@link Options} afterwards are not visible until it is
+ * compiled again.
+ * <p>
+ * The {@link Option} and {@link OptionGroup} objects are held, not copied,
+ * so changes to their settings, such as the number of arguments or whether
+ * they are required, are seen by later parses. Each such change also
+ * invalidates what the parse caches built from this snapshot.
+ * <p>
+ * The names are looked up in a hash table at first. After as many exact
+ * lookups as there are names, whether from parses or from
+ * {@link #getOption(String)} and the like, a perfect hash takes over the
+ * exact lookups. After enough tokens have been classified, a
+ * {@link TokenAutomaton} takes over the lookups of prefixes. Neither is
+ * serialized.
+ *
+ * @see Options#compile()
+ * @since 1.5
+ */
+public final class CompiledOptions implements Serializable
+{
+    /** The serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /** the number of characters covered by the dense single character tables */
+    private static final int ASCII = 128;
+
+    /** returned by {@link #matchLong} when a partial name matches several long names */
+    static final int AMBIGUOUS = -2;
+
+    /** the number of tokens classified without the automaton after which it is built */
+    static final int AUTOMATON_AFTER = 64;
+
+    /** the least number of exact lookups made without the perfect hash after which it is built */
+    static final int INDEX_AFTER = 64;
+
+    /** the options, indexed by ordinal */
+    private final Option[] options;
+
+    /** the long names, indexed in the order they were added */
+    private final String[] longNames;
+
+    /** the ordinal each long name resolves to, the option keys taking precedence as in {@link #resolve(String)} */
+    private final int[] longTarget;
+
+    /** the option keys (short name, or long name if there is no short name) and the long names, each listed once */
+    private final String[] names;
+
+    /** the position of each name in {@link #names}, for the exact lookups until {@link #nameIndex} is built */
+    private final Map<String, Integer> namePositions;
+
+    /** the ordinal of the option keyed by each name, or -1 */
+    private final int[] nameKey;
+
+    /** the index of the long name equal to each name, or -1 */
+    private final int[] nameLong;
+
+    /** the ordinal each name resolves to */
+    private final int[] nameTarget;
+
+    /** the perfect hash of the names for the exact lookups, once built */
+    private transient volatile PerfectHash nameIndex;
+
+    /** the number of exact lookups made without the perfect hash, or -1 if none was found for the names */
+    private transient int lookups;
+
+    /** the automaton recognizing the names in a single scan of a token, for the other lookups, once built */
+    private transient volatile TokenAutomaton automaton;
+
+    /** the number of tokens classified before the automaton was built, counted without synchronization */
+    private transient int scans;
+
+    /** the counters of the changes to the options and groups, a single one unless they were compiled apart before */
+    private transient AtomicLong[] versions;
+
+    /** the ordinal of the option keyed by each ASCII character, or -1 */
+    private final int[] charKey = new int[ASCII];
+
+    /** the ordinal each ASCII character resolves to, or -1 */
+    private final int[] charTarget = new int[ASCII];
+
+    /** the single character names outside of the ASCII range, sorted */
+    private final char[] wideChars;
+
+    /** the ordinal of the option keyed by each of {@link #wideChars}, or -1 */
+    private final int[] wideKey;
+
+    /** the ordinal each of {@link #wideChars} resolves to */
+    private final int[] wideTarget;
+
+    /** the option groups, indexed by group ordinal */
+    private final OptionGroup[] groups;
+
+    /** the group ordinal of each option, or -1 if the option is not part of a group */
+    private final int[] groupOf;
+
+    /** the ordinal of the option keyed by the key of each option, or -1 */
+    private final int[] keyOf;
+
+    /** the required options (as keys) and groups, in the order they were declared */
+    private final Object[] required;
+
+    /** the position in {@link #required} of the key of each option, or -1 */
+    private final int[] requiredSlot;
+
+    /** the positions in {@link #required} of each option group, usually none or one */
+    private final int[][] groupSlots;
+
+    /**
+     * Creates the compiled options from their tables, as written by
+     * {@link ParserGenerator}. The tables are not copied.
+     *
+     * @param options the options, indexed by ordinal
+     * @param names the option keys and the long names, each listed once
+     * @param nameKey the ordinal of the option keyed by each name, or -1
+     * @param nameLong the index of the long name equal to each name, or -1
+     * @param nameTarget the ordinal each name resolves to
+     * @param groups the option groups, indexed by group ordinal
+     * @param groupOf the group ordinal of each option, or -1
+     * @param required the required option keys and groups, in declaration order
+     */
+    CompiledOptions(Option[] options, String[] names, int[] nameKey, int[] nameLong, int[] nameTarget,
+                    OptionGroup[] groups, int[] groupOf, Object[] required)
+    {
+        this(options, names, nameKey, nameLong, nameTarget, groups, groupOf, required, positions(names));
+    }
+
+    private CompiledOptions(Option[] options, String[] names, int[] nameKey, int[] nameLong, int[] nameTarget,
+                            OptionGroup[] groups, int[] groupOf, Object[] required,
+                            Map<String, Integer> namePositions)
+    {
+        this.options = options;
+        this.names = names;
+        this.nameKey = nameKey;
+        this.nameLong = nameLong;
+        this.nameTarget = nameTarget;
+        this.groups = groups;
+        this.groupOf = groupOf;
+        this.required = required;
+        this.namePositions = namePositions;
+
+        int longCount = 0;
+        for (int index : nameLong)
+        {
+            longCount += index != -1 ? 1 : 0;
+        }
+        longNames = new String[longCount];
+        longTarget = new int[longCount];
+        for (int i = 0; i < names.length; i++)
+        {
+            if (nameLong[i] != -1)
+            {
+                longNames[nameLong[i]] = names[i];
+                longTarget[nameLong[i]] = nameTarget[i];
+            }
+        }
+
+        // single character names get a dense table, non-ASCII ones a sorted fallback
+        Arrays.fill(charKey, -1);
+        Arrays.fill(charTarget, -1);
+        StringBuilder wide = new StringBuilder();
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].length() != 1)
+            {
+                continue;
+            }
+
+            char c = names[i].charAt(0);
+            if (c < ASCII)
+            {
+                charKey[c] = nameKey[i];
+                charTarget[c] = nameTarget[i];
+            }
+            else
+            {
+                wide.append(c);
+            }
+        }
+        wideChars = wide.toString().toCharArray();
+        Arrays.sort(wideChars);
+        wideKey = new int[wideChars.length];
+        wideTarget = new int[wideChars.length];
+        for (int i = 0; i < wideChars.length; i++)
+        {
+            String name = String.valueOf(wideChars[i]);
+            wideKey[i] = keyOrdinal(name);
+            wideTarget[i] = resolve(name);
+        }
+
+        // number the required options and groups, so that a parse can track them in a bitset
+        List<Object> requiredList = Arrays.asList(required);
+        keyOf = new int[options.length];
+        requiredSlot = new int[options.length];
+        for (int i = 0; i < options.length; i++)
+        {
+            keyOf[i] = keyOrdinal(options[i].getKey());
+            requiredSlot[i] = requiredList.indexOf(options[i].getKey());
+        }
+        groupSlots = new int[groups.length][];
+        for (int g = 0; g < groups.length; g++)
+        {
+            int count = 0;
+            int[] slots = new int[required.length];
+            for (int i = 0; i < required.length; i++)
+            {
+                if (required[i] == groups[g])
+                {
+                    slots[count++] = i;
+                }
+            }
+            groupSlots[g] = Arrays.copyOf(slots, count);
+        }
+
+        versions = counters();
+
+        // the lookups of the compilation don't count for the perfect hash
+        lookups = 0;
+    }
+
+    /**
+     * Compiles the specified option tables. The arguments are the internal
+     * tables of an {@link Options} instance and are copied, not retained.
+     *
+     * @param shortOpts the options keyed by their key
+     * @param longOpts the options keyed by their long name
+     * @param requiredOpts the required option keys and groups
+     * @param optionGroups the option groups keyed by the key of their member options
+     * @return the compiled options
+     */
+    static CompiledOptions of(Map<String, Option> shortOpts, Map<String, Option> longOpts,
+                              List<Object> requiredOpts, Map<String, OptionGroup> optionGroups)
+    {
+        Map<Option, Integer> ordinals = new IdentityHashMap<Option, Integer>();
+        List<Option> list = new ArrayList<Option>(shortOpts.size());
+
+        String[] keys = shortOpts.keySet().toArray(new String[shortOpts.size()]);
+        int[] keyOwner = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keyOwner[i] = ordinal(shortOpts.get(keys[i]), ordinals, list);
+        }
+
+        // an option replaced in the short table may still be reachable by its long name
+        String[] longNames = longOpts.keySet().toArray(new String[longOpts.size()]);
+        int[] longOwner = new int[longNames.length];
+        for (int i = 0; i < longNames.length; i++)
+        {
+            longOwner[i] = ordinal(longOpts.get(longNames[i]), ordinals, list);
+        }
+
+        // the keys and the long names share their indexes, a name being looked up once for both
+        Map<String, Integer> namePositions = new HashMap<String, Integer>();
+        String[] union = Arrays.copyOf(keys, keys.length + longNames.length);
+        int[] unionKeys = Arrays.copyOf(keyOwner, union.length);
+        int[] unionLongs = new int[union.length];
+        Arrays.fill(unionLongs, -1);
+        for (int i = 0; i < keys.length; i++)
+        {
+            namePositions.put(keys[i], i);
+        }
+        int size = keys.length;
+        for (int i = 0; i < longNames.length; i++)
+        {
+            Integer position = namePositions.get(longNames[i]);
+            if (position != null)
+            {
+                unionLongs[position] = i;
+            }
+            else
+            {
+                namePositions.put(longNames[i], size);
+                union[size] = longNames[i];
+                unionKeys[size] = -1;
+                unionLongs[size++] = i;
+            }
+        }
+        int[] nameTarget = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            nameTarget[i] = unionKeys[i] != -1 ? unionKeys[i] : longOwner[unionLongs[i]];
+        }
+
+        Option[] options = list.toArray(new Option[list.size()]);
+
+        Map<OptionGroup, Integer> groupOrdinals = new IdentityHashMap<OptionGroup, Integer>();
+        List<OptionGroup> groupList = new ArrayList<OptionGroup>();
+        int[] groupOf = new int[options.length];
+        Arrays.fill(groupOf, -1);
+        for (Map.Entry<String, OptionGroup> entry : optionGroups.entrySet())
+        {
+            Integer groupOrdinal = groupOrdinals.get(entry.getValue());
+            if (groupOrdinal == null)
+            {
+                groupOrdinal = groupList.size();
+                groupOrdinals.put(entry.getValue(), groupOrdinal);
+                groupList.add(entry.getValue());
+            }
+
+            Option member = shortOpts.get(entry.getKey());
+            if (member != null)
+            {
+                groupOf[ordinals.get(member)] = groupOrdinal;
+            }
+        }
+
+        return new CompiledOptions(options, Arrays.copyOf(union, size), Arrays.copyOf(unionKeys, size),
+                Arrays.copyOf(unionLongs, size), nameTarget, groupList.toArray(new OptionGroup[groupList.size()]),
+                groupOf, requiredOpts.toArray(), namePositions);
+    }
+
+    /**
+     * Returns the position of each name.
+     */
+    private static Map<String, Integer> positions(String[] names)
+    {
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        for (int i = 0; i < names.length; i++)
+        {
+            positions.put(names[i], i);
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the ordinal of the specified option, assigning the next one if
+     * the option has not been seen yet.
+     */
+    private static int ordinal(Option option, Map<Option, Integer> ordinals, List<Option> list)
+    {
+        Integer ordinal = ordinals.get(option);
+        if (ordinal == null)
+        {
+            ordinal = list.size();
+            ordinals.put(option, ordinal);
+            list.add(option);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Retrieve the {@link Option} matching the long or short name specified.
+     *
+     * <p>
+     * The leading hyphens in the name are ignored (up to 2).
+     * </p>
+     *
+     * @param opt short or long name of the {@link Option}
+     * @return the option represented by opt, or null if there is none
+     */
+    public Option getOption(String opt)
+    {
+        int ordinal = resolve(opt, Util.leadingHyphens(opt, opt.length()), opt.length());
+        return ordinal == -1 ? null : options[ordinal];
+    }
+
+    /**
+     * Returns whether the named {@link Option} is a member of this definition.
+     *
+     * @param opt short or long name of the {@link Option}
+     * @return true if the named {@link Option} is a member of this definition
+     */
+    public boolean hasOption(String opt)
+    {
+        return resolve(opt, Util.leadingHyphens(opt, opt.length()), opt.length()) != -1;
+    }
+
+    /**
+     * Returns whether the named {@link Option} is a member of this definition.
+     *
+     * @param opt long name of the {@link Option}
+     * @return true if an {@link Option} with this long name is a member of this definition
+     */
+    public boolean hasLongOption(String opt)
+    {
+        int from = Util.leadingHyphens(opt, opt.length());
+        int name = find(opt, from, opt.length());
+        return name != -1 && nameLong[name] != -1;
+    }
+
+    /**
+     * Returns whether the named {@link Option} is a member of this definition.
+     *
+     * @param opt short name of the {@link Option}
+     * @return true if an {@link Option} with this short name is a member of this definition
+     */
+    public boolean hasShortOption(String opt)
+    {
+        return keyOrdinal(opt, Util.leadingHyphens(opt, opt.length()), opt.length()) != -1;
+    }
+
+    /**
+     * Returns the long names starting with the name specified.
+     *
+     * @param opt the partial name of the option
+     * @return the long names matching the partial name specified, or an empty list if none matches
+     */
+    public List<String> getMatchingOptions(String opt)
+    {
+        return matchingLongNames(Util.stripLeadingHyphens(opt));
+    }
+
+    /**
+     * Returns the OptionGroup the <code>opt</code> belongs to.
+     *
+     * @param opt the option whose OptionGroup is being queried.
+     * @return the OptionGroup if <code>opt</code> is part of an OptionGroup, otherwise return null
+     */
+    public OptionGroup getOptionGroup(Option opt)
+    {
+        int group = groupOrdinal(opt);
+        return group == -1 ? null : groups[group];
+    }
+
+    /**
+     * Returns the option groups of this definition, each group listed once.
+     *
+     * @return read-only collection of the option groups
+     */
+    public Collection<OptionGroup> getOptionGroups()
+    {
+        return Collections.unmodifiableList(Arrays.asList(groups));
+    }
+
+    /**
+     * Returns the required options and groups.
+     *
+     * @return read-only list of the keys of the required options and the required groups
+     */
+    public List<Object> getRequiredOptions()
+    {
+        return Collections.unmodifiableList(Arrays.asList(required));
+    }
+
+    /**
+     * Retrieve a read-only list of the options of this definition.
+     *
+     * @return read-only Collection of {@link Option} objects in this definition
+     */
+    public Collection<Option> getOptions()
+    {
+        return Collections.unmodifiableList(Arrays.asList(options));
+    }
+
+    /**
+     * Returns the version of the definitions of the options and groups of
+     * this snapshot, which changes with each change made to their
+     * attributes that change how a command line is parsed, like the number
+     * of arguments of an option. A result computed from a parse with these
+     * options is still valid as long as this number hasn't changed.
+     * <p>
+     * The options and groups compiled together share a single counter of
+     * their changes, so that this is a single volatile read on each parse
+     * using a cache. An option compiled before with other options keeps
+     * the counter it shares with them: the changes made to those options
+     * change this version too, which only costs a cache miss. A change is
+     * counted after the attribute is written, so a parse seeing the new
+     * version also sees the new attribute.
+     *
+     * @return the version of the option definitions
+     */
+    long definitionVersion()
+    {
+        AtomicLong[] counters = versions;
+        if (counters == null)
+        {
+            // after deserialization; a racing thread computes the same counters
+            counters = counters();
+            versions = counters;
+        }
+
+        if (counters.length == 1)
+        {
+            return counters[0].get();
+        }
+        long version = 0;
+        for (AtomicLong counter : counters)
+        {
+            version += counter.get();
+        }
+        return version;
+    }
+
+    /**
+     * Returns the distinct counters of the changes to the options and the
+     * groups, giving a new shared counter to those without one.
+     */
+    private AtomicLong[] counters()
+    {
+        AtomicLong shared = new AtomicLong();
+        Map<AtomicLong, Boolean> counters = new IdentityHashMap<AtomicLong, Boolean>();
+        for (Option option : options)
+        {
+            counters.put(option.definitionVersion(shared), Boolean.TRUE);
+        }
+        for (OptionGroup group : groups)
+        {
+            counters.put(group.definitionVersion(shared), Boolean.TRUE);
+        }
+        if (counters.isEmpty())
+        {
+            counters.put(shared, Boolean.TRUE);
+        }
+        return counters.keySet().toArray(new AtomicLong[counters.size()]);
+    }
+
+    /**
+     * Returns the number of names, the option keys and the long names each
+     * counted once.
+     */
+    int nameCount()
+    {
+        return names.length;
+    }
+
+    /**
+     * Returns the name at the specified position.
+     */
+    String name(int position)
+    {
+        return names[position];
+    }
+
+    /**
+     * Returns the ordinal of the option keyed by the name at the specified position, or -1.
+     */
+    int nameKey(int position)
+    {
+        return nameKey[position];
+    }
+
+    /**
+     * Returns the index of the long name equal to the name at the specified position, or -1.
+     */
+    int nameLong(int position)
+    {
+        return nameLong[position];
+    }
+
+    /**
+     * Returns the ordinal the name at the specified position resolves to.
+     */
+    int nameTarget(int position)
+    {
+        return nameTarget[position];
+    }
+
+    /**
+     * Returns the number of distinct options in this definition.
+     */
+    int size()
+    {
+        return options.length;
+    }
+
+    /**
+     * Returns the option with the specified ordinal.
+     */
+    Option option(int ordinal)
+    {
+        return options[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the option with the specified key, or -1.
+     *
+     * @param key the key of the option, without leading hyphens
+     */
+    int keyOrdinal(String key)
+    {
+        return keyOrdinal(key, 0, key.length());
+    }
+
+    /**
+     * Returns the ordinal of the option whose key is <code>s[from..to)</code>,
+     * or -1.
+     *
+     * @param s the string holding the key
+     * @param from the start of the key in <code>s</code>
+     * @param to the end of the key in <code>s</code>, exclusive
+     */
+    int keyOrdinal(String s, int from, int to)
+    {
+        int name = find(s, from, to);
+        return name == -1 ? -1 : nameKey[name];
+    }
+
+    /**
+     * Returns the position in {@link #names} of the name <code>s[from..to)</code>,
+     * or -1. The range is looked up as a substring at first. The perfect hash,
+     * which looks the name up without creating a String, is built by this
+     * call once there have been as many lookups as there are names, and at
+     * least {@link #INDEX_AFTER}: its construction costs about as much as a
+     * lookup of each name, which a single parse of a large option set
+     * wouldn't pay back. The lookups come from the parses as well as from
+     * {@link #getOption(String)} and the other public lookups. A lookup made
+     * by another thread in the meantime may be missed by the count, or the
+     * perfect hash built twice, without harm.
+     */
+    private int find(String s, int from, int to)
+    {
+        PerfectHash index = nameIndex;
+        if (index == null && lookups >= 0 && ++lookups > Math.max(INDEX_AFTER, names.length))
+        {
+            index = PerfectHash.of(names);
+            if (index == null)
+            {
+                lookups = -1;
+            }
+            nameIndex = index;
+        }
+        if (index != null)
+        {
+            return index.find(s, from, to);
+        }
+
+        Integer position = namePositions.get(s.substring(from, to));
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Returns the perfect hash of the names, or null while it isn't built.
+     */
+    PerfectHash nameIndex()
+    {
+        return nameIndex;
+    }
+
+    /**
+     * Walks the automaton over <code>s[from..to)</code>.
+     *
+     * @return the state reached, or -1 if no name starts with the range
+     */
+    private static int walk(TokenAutomaton automaton, String s, int from, int to)
+    {
+        int state = TokenAutomaton.START;
+        for (int pos = from; pos < to && state != -1; pos++)
+        {
+            state = automaton.next(state, s.charAt(pos));
+        }
+        return state;
+    }
+
+    /**
+     * Returns the ordinal of the option keyed by the specified character, or
+     * -1. This answers {@link #hasShortOption(String)} for a one character
+     * name without creating a String; as there, a hyphen is stripped and
+     * looks up the empty name.
+     *
+     * @param c the character
+     */
+    int shortOrdinal(char c)
+    {
+        if (c < ASCII && c != '-')
+        {
+            return charKey[c];
+        }
+        if (c == '-')
+        {
+            return keyOrdinal("");
+        }
+
+        int i = Arrays.binarySearch(wideChars, c);
+        return i < 0 ? -1 : wideKey[i];
+    }
+
+    /**
+     * Resolves a one character name the way {@link #getOption(String)} does,
+     * without creating a String.
+     *
+     * @param c the character
+     * @return the ordinal of the option, or -1
+     */
+    int resolve(char c)
+    {
+        if (c < ASCII && c != '-')
+        {
+            return charTarget[c];
+        }
+        if (c == '-')
+        {
+            return resolve("");
+        }
+
+        int i = Arrays.binarySearch(wideChars, c);
+        return i < 0 ? -1 : wideTarget[i];
+    }
+
+    /**
+     * Resolves a name the way {@link Options#getOption(String)} does: the
+     * options keys take precedence over the long names.
+     *
+     * @param name the name of the option, without leading hyphens
+     * @return the ordinal of the option, or -1
+     */
+    int resolve(String name)
+    {
+        return resolve(name, 0, name.length());
+    }
+
+    /**
+     * Resolves the name <code>s[from..to)</code> like {@link #resolve(String)},
+     * without creating a String.
+     *
+     * @return the ordinal of the option, or -1
+     */
+    int resolve(String s, int from, int to)
+    {
+        int name = find(s, from, to);
+        return name == -1 ? -1 : nameTarget[name];
+    }
+
+    /**
+     * Returns the long names starting with the specified prefix, in the order
+     * they were added. An exact match is returned as the single element of
+     * the list. This serves {@link #getMatchingOptions(String)} and the
+     * report of an ambiguous option, the parse itself relying on
+     * {@link #matchLong}, so the long names are simply scanned.
+     *
+     * @param prefix the prefix, without leading hyphens
+     */
+    List<String> matchingLongNames(String prefix)
+    {
+        int name = find(prefix, 0, prefix.length());
+        if (name != -1 && nameLong[name] != -1)
+        {
+            return Collections.singletonList(prefix);
+        }
+
+        List<String> matchingOpts = new ArrayList<String>();
+        for (String longName : longNames)
+        {
+            if (longName.startsWith(prefix))
+            {
+                matchingOpts.add(longName);
+            }
+        }
+        return matchingOpts;
+    }
+
+    /**
+     * Matches <code>s[from..to)</code> against the long names. A long name
+     * equal to the range always wins; otherwise, with partial matching, the
+     * range may be the prefix of a single long name. The automaton answers
+     * once built, the long names are scanned until then.
+     *
+     * @param s the string holding the name
+     * @param from the start of the name in <code>s</code>
+     * @param to the end of the name in <code>s</code>, exclusive
+     * @param partial whether a unique prefix of a long name is accepted
+     * @return the ordinal the matching long name resolves to, -1 if there is
+     * no match, or {@link #AMBIGUOUS} if several long names start with the range
+     */
+    int matchLong(String s, int from, int to, boolean partial)
+    {
+        TokenAutomaton automaton = this.automaton;
+        if (automaton != null)
+        {
+            int state = walk(automaton, s, from, to);
+            if (state == -1)
+            {
+                return -1;
+            }
+            int index = automaton.longName(state);
+            if (index != -1)
+            {
+                return longTarget[index];
+            }
+            return partial ? automaton.partial(state) : -1;
+        }
+
+        int name = find(s, from, to);
+        if (name != -1 && nameLong[name] != -1)
+        {
+            return nameTarget[name];
+        }
+        if (!partial)
+        {
+            return -1;
+        }
+
+        int match = -1;
+        for (int i = 0; i < longNames.length; i++)
+        {
+            if (longNames[i].length() > to - from && longNames[i].regionMatches(0, s, from, to - from))
+            {
+                if (match != -1)
+                {
+                    return AMBIGUOUS;
+                }
+                match = i;
+            }
+        }
+        return match == -1 ? -1 : longTarget[match];
+    }
+
+    /**
+     * Returns the index of the longest long name that is a prefix of
+     * <code>s[from..to)</code>, with a length between <code>minLength</code>
+     * and <code>maxLength</code>. This is used for the attached value syntax
+     * of JVM style options such as <code>-Xmx512m</code>. The automaton
+     * answers once built, the prefixes are looked up from the longest
+     * until then.
+     *
+     * @return the index of the long name, or -1 if there is none
+     * @see #longName(int)
+     * @see #longTarget(int)
+     */
+    int longestLongPrefix(String s, int from, int to, int minLength, int maxLength)
+    {
+        int end = Math.min(to, from + maxLength);
+        TokenAutomaton automaton = this.automaton;
+        if (automaton != null)
+        {
+            int longest = -1;
+            int state = TokenAutomaton.START;
+            for (int pos = from; pos <= end && state != -1; pos++)
+            {
+                if (pos - from >= minLength && automaton.longName(state) != -1)
+                {
+                    longest = automaton.longName(state);
+                }
+                if (pos < end)
+                {
+                    state = automaton.next(state, s.charAt(pos));
+                }
+            }
+            return longest;
+        }
+
+        for (int pos = end; pos - from >= minLength; pos--)
+        {
+            int name = find(s, from, pos);
+            if (name != -1 && nameLong[name] != -1)
+            {
+                return nameLong[name];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the automaton recognizing the option keys and the long names,
+     * or null while it isn't built yet. The automaton is built by this call
+     * once {@link #AUTOMATON_AFTER}
+     * tokens have been classified without it: a parse of a few tokens
+     * doesn't pay for the construction, which costs as much as looking up
+     * the names of a few dozen tokens separately. A token classified by
+     * another thread in the meantime may be missed by the count, or the
+     * automaton built twice, without harm.
+     *
+     * @return the automaton, or null if the names of the token are to be looked up separately
+     */
+    TokenAutomaton automaton()
+    {
+        TokenAutomaton automaton = this.automaton;
+        if (automaton == null && ++scans >= AUTOMATON_AFTER)
+        {
+            automaton = new TokenAutomaton(names, nameKey, nameLong, longTarget);
+            this.automaton = automaton;
+        }
+        return automaton;
+    }
+
+    /**
+     * Returns the number of long names.
+     */
+    int longNameCount()
+    {
+        return longTarget.length;
+    }
+
+    /**
+     * Returns the long name with the specified index.
+     */
+    String longName(int index)
+    {
+        return longNames[index];
+    }
+
+    /**
+     * Returns the ordinal the long name with the specified index resolves to.
+     */
+    int longTarget(int index)
+    {
+        return longTarget[index];
+    }
+
+    /**
+     * Returns the number of option groups.
+     */
+    int groupCount()
+    {
+        return groups.length;
+    }
+
+    /**
+     * Returns the option group with the specified group ordinal.
+     */
+    OptionGroup group(int groupOrdinal)
+    {
+        return groups[groupOrdinal];
+    }
+
+    /**
+     * Returns the group ordinal of the specified option, or -1 if the option
+     * is not part of a group. Like {@link Options#getOptionGroup(Option)} the
+     * group is looked up by the key of the option.
+     */
+    int groupOrdinal(Option opt)
+    {
+        int ordinal = keyOrdinal(opt.getKey());
+        return ordinal == -1 ? -1 : groupOf[ordinal];
+    }
+
+    /**
+     * Returns the group ordinal of the option with the specified ordinal, or -1.
+     */
+    int groupOf(int ordinal)
+    {
+        return groupOf[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the option keyed by the key of the option with
+     * the specified ordinal, or -1. It is the ordinal itself, unless the
+     * option was replaced in the key table and is only reachable by its
+     * long name.
+     */
+    int keyOf(int ordinal)
+    {
+        return keyOf[ordinal];
+    }
+
+    /**
+     * Returns the number of required options and groups.
+     */
+    int requiredCount()
+    {
+        return required.length;
+    }
+
+    /**
+     * Returns the required option key or group at the specified position,
+     * in declaration order.
+     */
+    Object required(int slot)
+    {
+        return required[slot];
+    }
+
+    /**
+     * Returns the position among the required elements of the key of the
+     * option with the specified ordinal, or -1 if the key isn't required.
+     */
+    int requiredSlot(int ordinal)
+    {
+        return requiredSlot[ordinal];
+    }
+
+    /**
+     * Returns the positions among the required elements of the option group
+     * with the specified group ordinal, in ascending order. A group added
+     * several times is required as many times.
+     */
+    int[] groupSlots(int groupOrdinal)
+    {
+        return groupSlots[groupOrdinal];
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[ CompiledOptions: " + Arrays.toString(options) + " ]";
+    }
+}
@@ -18,44 +18,31 @@
 package org.apache.commons.cli;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Properties;
 
 /**
  * Default parser.
+ * <p>
+ * The parser keeps no state between calls: everything a parse needs is held
+ * in a session created for that call. A single instance may therefore be
+ * shared and used by several threads at the same time. The storage reused
+ * from one parse or validation to the next is held by the caller, in a
+ * {@link ParseContext}. A parser may also be given a {@link TokenCache},
+ * shared with the other parsers using it.
  *
  * @since 1.3
  */
 public class DefaultParser implements CommandLineParser
 {
-    /** The command-line instance. */
-    protected CommandLine cmd;
-    
-    /** The current options. */
-    protected Options options;
-
-    /**
-     * Flag indicating how unrecognized tokens are handled. <tt>true</tt> to stop
-     * the parsing and add the remaining tokens to the args list.
-     * <tt>false</tt> to throw an exception. 
-     */
-    protected boolean stopAtNonOption;
-
-    /** The token currently processed. */
-    protected String currentToken;
- 
-    /** The last option parsed. */
-    protected Option currentOption;
- 
-    /** Flag indicating if tokens should no longer be analyzed and simply added as arguments of the command line. */
-    protected boolean skipParsing;
- 
-    /** The required options and groups expected to be found when parsing the command line. */
-    protected List expectedOpts;
-
     /** Flag indicating if partial matching of long options is supported. */
-    private  boolean allowPartialMatching;
+    private final boolean allowPartialMatching;
+
+    /** The cache of the token classifications, or null. */
+    private final TokenCache tokenCache;
 
     /**
      * Creates a new DefaultParser instance with partial matching enabled.
@@ -75,7 +62,7 @@ public class DefaultParser implements CommandLineParser
      * <code>extract</code> options.
      */
     public DefaultParser() {
-        this.allowPartialMatching = true;
+        this(true);
     }
 
     /**
@@ -98,7 +85,22 @@ public class DefaultParser implements CommandLineParser
      * @param allowPartialMatching if partial matching of long options shall be enabled
      */
     public DefaultParser( boolean allowPartialMatching) {
+        this(allowPartialMatching, null);
+    }
+
+    /**
+     * Create a new DefaultParser instance with the specified partial matching
+     * policy, classifying the tokens through the specified cache. The cache
+     * is used for the command lines parsed against its options, and may be
+     * shared by several parsers.
+     *
+     * @param allowPartialMatching if partial matching of long options shall be enabled
+     * @param tokenCache the cache of the token classifications, or null
+     * @since 1.5
+     */
+    public DefaultParser( boolean allowPartialMatching,  TokenCache tokenCache) {
         this.allowPartialMatching = allowPartialMatching;
+        this.tokenCache = tokenCache;
     }
 
     public CommandLine parse( Options options,  String[] arguments) throws ParseException
@@ -145,37 +147,414 @@ public class DefaultParser implements CommandLineParser
     public CommandLine parse( Options options,  String[] arguments,  Properties properties,  boolean stopAtNonOption)
             throws ParseException
     {
-        this.options = options;
-        this.stopAtNonOption = stopAtNonOption;
-        skipParsing = false;
-        currentOption = null;
-        expectedOpts = new ArrayList(options.getRequiredOptions());
+        return parse(options.compile(), arguments, properties, stopAtNonOption);
+    }
+
+    /**
+     * Parse the arguments according to the specified compiled options.
+     *
+     * @param options   the compiled options
+     * @param arguments the command line arguments
+     * @return the list of atomic option and value tokens
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     * @since 1.5
+     */
+    public CommandLine parse( CompiledOptions options,  String[] arguments) throws ParseException
+    {
+        return parse(options, arguments, null, false);
+    }
+
+    /**
+     * Parse the arguments according to the specified compiled options and properties.
+     *
+     * @param options         the compiled options
+     * @param arguments       the command line arguments
+     * @param properties      command line option name-value pairs
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the 
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     *
+     * @return the list of atomic option and value tokens
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     * @since 1.5
+     */
+    public CommandLine parse( CompiledOptions options,  String[] arguments,  Properties properties,  boolean stopAtNonOption)
+            throws ParseException
+    {
+        return parse(new Session(options, false, false), arguments, properties, stopAtNonOption);
+    }
+
+    /**
+     * Parse the arguments into the command line of the specified context,
+     * reusing the storage left by its previous parse.
+     *
+     * @param context   the parse context, holding the compiled options
+     * @param arguments the command line arguments
+     * @return the command line of the context, valid until its next parse or reset
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     * @since 1.5
+     */
+    public CommandLine parse( ParseContext context,  String[] arguments) throws ParseException
+    {
+        return parse(context, arguments, null, false);
+    }
+
+    /**
+     * Parse the arguments and properties into the command line of the
+     * specified context, reusing the storage left by its previous parse.
+     *
+     * @param context         the parse context, holding the compiled options
+     * @param arguments       the command line arguments
+     * @param properties      command line option name-value pairs
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the 
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     *
+     * @return the command line of the context, valid until its next parse or reset
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     * @since 1.5
+     */
+    public CommandLine parse( ParseContext context,  String[] arguments,  Properties properties,  boolean stopAtNonOption)
+            throws ParseException
+    {
+        context.reset();
+        return parse(context.session, arguments, properties, stopAtNonOption);
+    }
+
+    /**
+     * Parse the arguments according to the options of the specified plan
+     * cache. A command line having the shape of a command line parsed before
+     * is filled following the plan of that parse, without resolving its
+     * tokens again.
+     *
+     * @param plans     the plan cache, holding the compiled options
+     * @param arguments the command line arguments
+     * @return the command line
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     * @since 1.5
+     */
+    public CommandLine parse( ParsePlanCache plans,  String[] arguments) throws ParseException
+    {
+        return parse(plans, arguments, false);
+    }
 
-        // clear the data from the groups
-        for ( OptionGroup group : options.getOptionGroups())
+    /**
+     * Parse the arguments according to the options of the specified plan
+     * cache, following the plan of the command lines of the same shape.
+     * A command line without a plan is parsed as usual, and its plan is
+     * cached once it has been parsed successfully.
+     *
+     * @param plans           the plan cache, holding the compiled options
+     * @param arguments       the command line arguments
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the 
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     *
+     * @return the command line
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     * @since 1.5
+     */
+    public CommandLine parse( ParsePlanCache plans,  String[] arguments,  boolean stopAtNonOption) throws ParseException
+    {
+        String[] args = arguments == null ? new String[0] : arguments;
+        long version = plans.options.definitionVersion();
+        int shape = ParsePlanCache.shape(args, stopAtNonOption);
+        Session session = new Session(plans.options, false, false);
+
+        ParsePlanCache.Plan plan = plans.get(args, shape, version, allowPartialMatching, stopAtNonOption);
+        if (plan != null)
         {
-            group.setSelected(null);
+            return replay(session, plan, args);
+        }
+
+        session.recorder = new ParsePlanCache.Recorder(args);
+        CommandLine cmd = parse(session, args, null, stopAtNonOption);
+        plans.put(session.recorder.plan(shape, version, allowPartialMatching, stopAtNonOption));
+        return cmd;
+    }
+
+    /**
+     * Fills the command line of a session following the plan of a command
+     * line of the same shape. The parse the plan was made from succeeded,
+     * the checks it passed have the same outcome for the command line and
+     * are not repeated.
+     *
+     * @param plan the plan of the command lines of this shape
+     * @param arguments the command line arguments
+     * @return the command line
+     */
+    private static CommandLine replay(Session s, ParsePlanCache.Plan plan, String[] arguments)
+    {
+        int[] steps = plan.steps;
+        Occurrence current = null;
+        for ( int k = 0; k < steps.length; k += ParsePlanCache.STEP)
+        {
+            int a = steps[k + 1];
+            int b = steps[k + 2];
+            switch (steps[k])
+            {
+                case ParsePlanCache.OPTION:
+                    current = s.newOccurrence(a);
+                    s.cmd.addOccurrence(current);
+                    break;
+
+                case ParsePlanCache.VALUE:
+                    int c = steps[k + 3];
+                    current.addValue(arguments[a], b, c == -1 ? arguments[a].length() : c);
+                    break;
+
+                case ParsePlanCache.ARGUMENT:
+                    current.addArgument(arguments[a]);
+                    break;
+
+                case ParsePlanCache.VALUES:
+                    current.addValues(arguments, a, b);
+                    break;
+
+                case ParsePlanCache.ARG:
+                    s.cmd.addArg(b == 0 ? arguments[a] : arguments[a].substring(b));
+                    break;
+
+                default:
+                    s.cmd.addArgs(arguments, a, arguments.length);
+            }
         }
+        return s.cmd;
+    }
+
+    /**
+     * Checks the arguments against the specified options without building
+     * a command line: the tokens go through the same grammar, group and
+     * required option checks as {@link #parse(Options, String[])}, but
+     * neither the options nor their values are recorded. Each call
+     * allocates the state of its parse: only
+     * {@link #validate(ParseContext, String[], boolean)}, reusing the
+     * storage of the context, validates without allocating.
+     *
+     * @param options   the specified Options
+     * @param arguments the command line arguments
+     * @return {@link ValidationResult#VALID}, or the reason the parse would fail
+     * @since 1.5
+     */
+    public ValidationResult validate( Options options,  String[] arguments)
+    {
+        return validate(options.compile(), arguments, false);
+    }
 
-        cmd = new CommandLine();
+    /**
+     * Checks the arguments against the specified compiled options without
+     * building a command line, like {@link #validate(Options, String[])}.
+     *
+     * @param options         the compiled options
+     * @param arguments       the command line arguments
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are accepted as they are.
+     *     If <tt>false</tt> an unrecognized argument is an error.
+     * @return {@link ValidationResult#VALID}, or the reason the parse would fail
+     * @since 1.5
+     */
+    public ValidationResult validate( CompiledOptions options,  String[] arguments,  boolean stopAtNonOption)
+    {
+        return validate(new Session(options, false, true), arguments, stopAtNonOption);
+    }
+
+    /**
+     * Checks the arguments against the options of the specified context
+     * without building a command line, like
+     * {@link #validate(Options, String[])}. The command line of the context
+     * is left untouched. Validating a valid command line allocates nothing
+     * once the context has validated a command line, the storage being held
+     * by the context rather than by the parser.
+     *
+     * @param context         the parse context, holding the compiled options
+     * @param arguments       the command line arguments
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are accepted as they are.
+     *     If <tt>false</tt> an unrecognized argument is an error.
+     * @return {@link ValidationResult#VALID}, or the reason the parse would fail
+     * @since 1.5
+     */
+    public ValidationResult validate( ParseContext context,  String[] arguments,  boolean stopAtNonOption)
+    {
+        Session session = context.validation();
+        session.reset();
+        return validate(session, arguments, stopAtNonOption);
+    }
+
+    private ValidationResult validate(Session session, String[] arguments, boolean stopAtNonOption)
+    {
+        try
+        {
+            parse(session, arguments, null, stopAtNonOption);
+            return ValidationResult.VALID;
+        }
+        catch (ParseException e)
+        {
+            return ValidationResult.of(e);
+        }
+    }
+
+    /**
+     * Extracts the specified options from the arguments without parsing the
+     * whole command line. The tokens are read with the same rules as
+     * {@link #parse(Options, String[])}: clusters, attached values, partial
+     * long names and "--" are handled alike and a malformed token before
+     * the targets are found is still an error. But only the target options
+     * are recorded, and the reading stops as soon as each target has
+     * occurred and received its values. Later occurrences of a target are
+     * therefore not seen. The required options and the option groups are
+     * not checked, and the arguments are not recorded.
+     *
+     * @param options   the specified Options
+     * @param arguments the command line arguments
+     * @param targets   the names of the options to extract
+     * @return a command line holding the target options found
+     * @throws ParseException if there are any problems encountered
+     * while reading the command line tokens.
+     * @throws IllegalArgumentException if a target is not defined by the options
+     * @since 1.5
+     */
+    public CommandLine extract( Options options,  String[] arguments,  String... targets) throws ParseException
+    {
+        return extract(options.compile(), arguments, false, targets);
+    }
+
+    /**
+     * Extracts the specified options from the arguments without parsing the
+     * whole command line, like {@link #extract(Options, String[], String...)}.
+     *
+     * @param options         the compiled options
+     * @param arguments       the command line arguments
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the reading of the command line. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     * @param targets         the names of the options to extract
+     * @return a command line holding the target options found
+     * @throws ParseException if there are any problems encountered
+     * while reading the command line tokens.
+     * @throws IllegalArgumentException if a target is not defined by the options
+     * @since 1.5
+     */
+    public CommandLine extract( CompiledOptions options,  String[] arguments,  boolean stopAtNonOption,  String... targets)
+            throws ParseException
+    {
+        Session session = new Session(options, false, false);
+        session.targets = new long[(options.size() + 63) >>> 6];
+        for ( String target : targets)
+        {
+            int ordinal = options.resolve(target, Util.leadingHyphens(target, target.length()), target.length());
+            if (ordinal == -1)
+            {
+                throw new IllegalArgumentException("Unknown option: " + target);
+            }
+            session.targets[ordinal >>> 6] |= 1L << ordinal;
+        }
+        for ( long bits : session.targets)
+        {
+            session.missingTargets += Long.bitCount(bits);
+        }
+
+        return parse(session, arguments, null, stopAtNonOption);
+    }
+
+    private CommandLine parse(Session session, String[] arguments, Properties properties, boolean stopAtNonOption)
+            throws ParseException
+    {
+        session.stopAtNonOption = stopAtNonOption;
+        if (tokenCache != null && tokenCache.options == session.options)
+        {
+            session.tokenCache = tokenCache;
+            session.definitionVersion = session.options.definitionVersion();
+        }
+        else
+        {
+            session.tokenCache = null;
+        }
 
         if (arguments != null)
         {
-            for ( String argument : arguments)
+            int i = 0;
+            while (i < arguments.length && !session.skipParsing && !session.extracted())
             {
-                handleToken(argument);
+                session.position = i;
+                handleToken(session, arguments[i++]);
+
+                if (!session.skipParsing && session.currentOption != null
+                        && session.currentOption.option.getArgs() == Option.UNLIMITED_VALUES)
+                {
+                    i = absorbValues(session, arguments, i);
+                }
+            }
+
+            // after "--" or the first non option with stopAtNonOption, the remaining tokens are copied as they are
+            if (session.recordsArgs())
+            {
+                session.cmd.addArgs(arguments, i, arguments.length);
+                if (session.recorder != null)
+                {
+                    session.recorder.step(ParsePlanCache.ARGS, i, 0, 0);
+                }
             }
         }
 
         // check the arguments of the last option
-        checkRequiredArgs();
+        checkRequiredArgs(session);
 
         // add the default options
-        handleProperties(properties);
+        handleProperties(session, properties);
 
-        checkRequiredOptions();
+        if (session.targets == null)
+        {
+            checkRequiredOptions(missingOptions(session));
+        }
 
-        return cmd;
+        return session.cmd;
+    }
+
+    /**
+     * Adds the run of tokens starting at the specified position that can
+     * only be values to the current option, which takes an unlimited number
+     * of values. A token not starting with a dash can't be an option, so the
+     * run ends at the first token starting with a dash; that token is left
+     * to {@link #handleToken(Session, String)}, which tells whether it is an
+     * option or a value like a negative number.
+     *
+     * @param arguments the command line tokens
+     * @param from the position of the first token of the run
+     * @return the position of the first token after the run
+     */
+    private int absorbValues(Session s, String[] arguments, int from)
+    {
+        int to = from;
+        while (to < arguments.length && !isOptionLike(arguments[to]))
+        {
+            to++;
+        }
+
+        s.currentOption.addValues(arguments, from, to);
+        if (s.recorder != null && to > from)
+        {
+            s.recorder.arguments(s.currentOption.option, from, to);
+        }
+        return to;
+    }
+
+    /**
+     * Tells if the token needs the option lookups to be told from a value:
+     * it starts with a dash and is longer than a dash alone.
+     */
+    static boolean isOptionLike( String token)
+    {
+        return token.length() > 1 && token.charAt(0) == '-';
     }
 
     /**
@@ -183,7 +562,7 @@ public class DefaultParser implements CommandLineParser
      *
      * @param properties The value properties to be processed.
      */
-    private void handleProperties( Properties properties) throws ParseException
+    private void handleProperties(Session s, Properties properties) throws ParseException
     {
         if (properties == null)
         {
@@ -194,29 +573,24 @@ public class DefaultParser implements CommandLineParser
         {
              String option = e.nextElement().toString();
 
-             Option opt = options.getOption(option);
-            if (opt == null)
+            int ordinal = s.options.resolve(option, Util.leadingHyphens(option, option.length()), option.length());
+            if (ordinal == -1)
             {
                 throw new UnrecognizedOptionException("Default option wasn't defined", option);
             }
 
+            Option opt = s.options.option(ordinal);
+
             // if the option is part of a group, check if another option of the group has been selected
-             OptionGroup group = options.getOptionGroup(opt);
-             boolean selected = group != null && group.getSelected() != null;
+            int group = s.options.groupOrdinal(opt);
+            boolean selected = group != -1 && s.selected[group] != -1;
 
-            if (!cmd.hasOption(option) && !selected)
+            if (!s.cmd.hasOption(option) && !selected)
             {
                 // get the value from the properties
                  String value = properties.getProperty(option);
 
-                if (opt.hasArg())
-                {
-                    if (opt.getValues().isEmpty())
-                    {
-                        opt.addValueForProcessing(value);
-                    }
-                }
-                else if (!("yes".equalsIgnoreCase(value)
+                if (!opt.hasArg() && !("yes".equalsIgnoreCase(value)
                         || "true".equalsIgnoreCase(value)
                         || "1".equalsIgnoreCase(value)))
                 {
@@ -224,8 +598,14 @@ public class DefaultParser implements CommandLineParser
                     continue;
                 }
 
-                handleOption(opt);
-                currentOption = null;
+                handleOption(s, ordinal);
+
+                // the value goes to the recorded copy, the shared definition is left untouched
+                if (opt.hasArg() && s.currentOption.valueCount() == 0)
+                {
+                    s.currentOption.addValueForProcessing(value);
+                }
+                s.currentOption = null;
             }
         }
     }
@@ -234,15 +614,17 @@ public class DefaultParser implements CommandLineParser
      * Throws a {@link MissingOptionException} if all of the required options
      * are not present.
      *
+     * @param missingOptions the required options and groups that were not
+     * found on the command line
      * @throws MissingOptionException if any of the required Options
      * are not present.
      */
-    protected void checkRequiredOptions() throws MissingOptionException
+    protected void checkRequiredOptions( List<?> missingOptions) throws MissingOptionException
     {
         // if there are required options that have not been processed
-        if (!expectedOpts.isEmpty())
+        if (!missingOptions.isEmpty())
         {
-            throw new MissingOptionException(expectedOpts);
+            throw new MissingOptionException(missingOptions);
         }
     }
 
@@ -250,11 +632,11 @@ public class DefaultParser implements CommandLineParser
      * Throw a {@link MissingArgumentException} if the current option
      * didn't receive the number of arguments expected.
      */
-    private void checkRequiredArgs() throws ParseException
+    private void checkRequiredArgs(Session s) throws ParseException
     {
-        if (currentOption != null && currentOption.requiresArg())
+        if (s.currentOption != null && s.currentOption.requiresArg())
         {
-            throw new MissingArgumentException(currentOption);
+            throw new MissingArgumentException(s.currentOption.toOption());
         }
     }
 
@@ -264,130 +646,171 @@ public class DefaultParser implements CommandLineParser
      * @param token the command line token to handle
      * @throws ParseException
      */
-    private void handleToken( String token) throws ParseException
+    private void handleToken(Session s, String token) throws ParseException
     {
-        currentToken = token;
+        s.currentToken = token;
 
-        if (skipParsing)
-        {
-            cmd.addArg(token);
-        }
-        else if ("--".equals(token))
+        if ("--".equals(token))
         {
-            skipParsing = true;
-        }
-        else if (currentOption != null && currentOption.acceptsArg() && isArgument(token))
-        {
-            currentOption.addValueForProcessing(Util.stripLeadingAndTrailingQuotes(token));
-        }
-        else if (token.startsWith("--"))
-        {
-            handleLongOption(token);
-        }
-        else if (token.startsWith("-") && !"-".equals(token))
-        {
-            handleShortAndLongOption(token);
+            s.skipParsing = true;
         }
         else
         {
-            handleUnknownToken(token);
+            // only a token starting with a dash can be an option and needs a classification
+            Token t = isOptionLike(token) ? resolve(s, token) : null;
+
+            if (s.currentOption != null && s.currentOption.acceptsArg() && (t == null || isArgument(s, t)))
+            {
+                s.currentOption.addArgument(token);
+                if (s.recorder != null)
+                {
+                    s.recorder.arguments(s.currentOption.option, s.position, s.position + 1);
+                }
+            }
+            else if (t == null)
+            {
+                handleUnknownToken(s, token);
+            }
+            else
+            {
+                handleToken(s, t.cached ? t : classify(s, t));
+            }
         }
 
-        if (currentOption != null && !currentOption.acceptsArg())
+        if (s.currentOption != null && !s.currentOption.acceptsArg())
         {
-            currentOption = null;
+            s.currentOption = null;
         }
     }
 
     /**
-     * Returns true is the token is a valid argument.
+     * Prepares the classification of a token starting with a dash. Without
+     * a token cache the lookups are left to be done when they are needed.
+     * With a cache, the classification is taken from the cache, or computed
+     * in full and cached.
      *
-     * @param token
+     * @param token the command line token
+     * @return the classification of the token
      */
-    private boolean isArgument( String token)
+    private Token resolve(Session s, String token)
     {
-        return !isOption(token) || isNegativeNumber(token);
+        if (s.tokenCache == null)
+        {
+            return s.token.reset(token);
+        }
+
+        TokenCache.Entry entry = s.tokenCache.get(token, s.definitionVersion, allowPartialMatching);
+        if (entry != null)
+        {
+            return s.token.restore(entry);
+        }
+
+        Token t = s.token.reset(token);
+        boolean argument = isArgument(s, t);
+        classify(s, t);
+        s.tokenCache.put(new TokenCache.Entry(t, s.definitionVersion, allowPartialMatching, argument));
+        t.argument = argument;
+        t.cached = true;
+        return t;
     }
 
     /**
-     * Check if the token is a negative number.
+     * Handles a classified token.
      *
-     * @param token
+     * @param t the classification of the current token
+     * @throws ParseException
      */
-    private boolean isNegativeNumber( String token)
+    private void handleToken(Session s, Token t) throws ParseException
     {
-        try
+        switch (t.kind)
         {
-            Double.parseDouble(token);
-            return true;
-        }
-        catch ( NumberFormatException e)
-        {
-            return false;
+            case Token.OPTION:
+                handleOption(s, t.ordinal);
+                break;
+
+            case Token.OPTION_VALUE:
+                handleOption(s, t.ordinal);
+                s.currentOption.addValue(t.text, t.valueStart, t.text.length());
+                if (s.recorder != null)
+                {
+                    s.recorder.value(s.currentOption.option, s.position, t.valueStart, -1);
+                }
+                s.currentOption = null;
+                break;
+
+            case Token.PROPERTY:
+                handleOption(s, t.ordinal);
+                s.currentOption.addValue(t.text, t.valueStart, t.eq);
+                s.currentOption.addValue(t.text, t.eq + 1, t.text.length());
+                if (s.recorder != null)
+                {
+                    s.recorder.value(s.currentOption.option, s.position, t.valueStart, t.eq);
+                    s.recorder.value(s.currentOption.option, s.position, t.eq + 1, -1);
+                }
+                s.currentOption = null;
+                break;
+
+            case Token.CLUSTER:
+                handleConcatenatedOptions(s, t.text);
+                break;
+
+            case Token.AMBIGUOUS:
+                String opt = t.text.substring(0, t.end);
+                throw new AmbiguousOptionException(opt, s.options.getMatchingOptions(opt));
+
+            default:
+                handleUnknownToken(s, t.text);
         }
     }
 
     /**
-     * Tells if the token looks like an option.
+     * Returns true is the token is a valid argument.
      *
-     * @param token
+     * @param t the classification of the token
      */
-    private boolean isOption( String token)
+    private boolean isArgument(Session s, Token t)
     {
-        return isLongOption(token) || isShortOption(token);
+        if (t.cached)
+        {
+            return t.argument;
+        }
+        return !isOption(s, t) || isNegativeNumber(t.text);
     }
 
     /**
-     * Tells if the token looks like a short option.
-     * 
+     * Check if the token is a negative number.
+     *
      * @param token
      */
-    private boolean isShortOption( String token)
+    private boolean isNegativeNumber( String token)
     {
-        // short options (-S, -SV, -S=V, -SV1=V2, -S1S2)
-        if (!token.startsWith("-") || token.length() == 1)
-        {
-            return false;
-        }
-
-        // remove leading "-" and "=value"
-         int pos = token.indexOf("=");
-         String optName = pos == -1 ? token.substring(1) : token.substring(1, pos);
-        if (options.hasShortOption(optName))
-        {
-            return true;
-        }
-        // check for several concatenated short options
-        return optName.length() > 0 && options.hasShortOption(String.valueOf(optName.charAt(0)));
+        return Util.isNumber(token);
     }
 
     /**
-     * Tells if the token looks like a long option.
+     * Tells if the token looks like an option: a long or partial long
+     * option (--L, -L, --L=V, -L=V, --l, --l=V), a long option followed by
+     * its value (-LV), or one or several short options (-S, -SV, -S=V,
+     * -SV1=V2, -S1S2). The lookups done here are kept in the classification
+     * and not repeated when the token is handled.
      *
-     * @param token
+     * @param t the classification of the token, which starts with a dash
      */
-    private boolean isLongOption( String token)
+    private boolean isOption(Session s, Token t)
     {
-        if (!token.startsWith("-") || token.length() == 1)
+        if (t.longMatch(s.options, allowPartialMatching) != -1)
         {
-            return false;
+            return true;
         }
-
-         int pos = token.indexOf("=");
-         String t = pos == -1 ? token : token.substring(0, pos);
-
-        if (!getMatchingLongOptions(t).isEmpty())
+        if (!t.isDoubleDash() && t.longPrefix(s.options) != -1)
         {
-            // long or partial long options (--L, -L, --L=V, -L=V, --l, --l=V)
             return true;
         }
-        else if (getLongPrefix(token) != null && !token.startsWith("--"))
+        if (t.end > 2 && t.keyMatch(s.options) != -1)
         {
-            // -LV
             return true;
         }
-
-        return false;
+        return t.end > 1 && s.options.shortOrdinal(t.text.charAt(1)) != -1;
     }
 
     /**
@@ -399,332 +822,301 @@ public class DefaultParser implements CommandLineParser
      *
      * @param token the command line token to handle
      */
-    private void handleUnknownToken( String token) throws ParseException
+    private void handleUnknownToken(Session s, String token) throws ParseException
     {
-        if (token.startsWith("-") && token.length() > 1 && !stopAtNonOption)
+        if (token.startsWith("-") && token.length() > 1 && !s.stopAtNonOption)
         {
             throw new UnrecognizedOptionException("Unrecognized option: " + token, token);
         }
 
-        cmd.addArg(token);
-        if (stopAtNonOption)
-        {
-            skipParsing = true;
-        }
-    }
-
-    /**
-     * Handles the following tokens:
-     *
-     * --L
-     * --L=V
-     * --L V
-     * --l
-     *
-     * @param token the command line token to handle
-     */
-    private void handleLongOption( String token) throws ParseException
-    {
-        if (token.indexOf('=') == -1)
+        if (s.recordsArgs())
         {
-            handleLongOptionWithoutEqual(token);
+            s.cmd.addArg(token);
+            if (s.recorder != null)
+            {
+                // the token may be the end of a cluster, as far as a stopAtNonOption parse went
+                s.recorder.step(ParsePlanCache.ARG, s.position, s.currentToken.length() - token.length(), 0);
+            }
         }
-        else
+        if (s.stopAtNonOption)
         {
-            handleLongOptionWithEqual(token);
+            s.skipParsing = true;
         }
     }
 
     /**
-     * Handles the following tokens:
+     * Classifies a token, resolving the option it names once. The tokens
+     * recognized are:
      *
      * --L
-     * -L
-     * --l
-     * -l
-     * 
-     * @param token the command line token to handle
-     */
-    private void handleLongOptionWithoutEqual( String token) throws ParseException
-    {
-         List<String> matchingOpts = getMatchingLongOptions(token);
-        if (matchingOpts.isEmpty())
-        {
-            handleUnknownToken(currentToken);
-        }
-        else if (matchingOpts.size() > 1 && !options.hasLongOption(token))
-        {
-            throw new AmbiguousOptionException(token, matchingOpts);
-        }
-        else
-        {
-             String key = options.hasLongOption(token) ? token : matchingOpts.get(0);
-            handleOption(options.getOption(key));
-        }
-    }
-
-    /**
-     * Handles the following tokens:
-     *
      * --L=V
-     * -L=V
+     * --l
      * --l=V
-     * -l=V
-     *
-     * @param token the command line token to handle
-     */
-    private void handleLongOptionWithEqual( String token) throws ParseException
-    {
-         int pos = token.indexOf('=');
-
-         String value = token.substring(pos + 1);
-
-         String opt = token.substring(0, pos);
-
-         List<String> matchingOpts = getMatchingLongOptions(opt);
-        if (matchingOpts.isEmpty())
-        {
-            handleUnknownToken(currentToken);
-        }
-        else if (matchingOpts.size() > 1 && !options.hasLongOption(opt))
-        {
-            throw new AmbiguousOptionException(opt, matchingOpts);
-        }
-        else
-        {
-             String key = options.hasLongOption(opt) ? opt : matchingOpts.get(0);
-             Option option = options.getOption(key);
-
-            if (option.acceptsArg())
-            {
-                handleOption(option);
-                currentOption.addValueForProcessing(value);
-                currentOption = null;
-            }
-            else
-            {
-                handleUnknownToken(currentToken);
-            }
-        }
-    }
-
-    /**
-     * Handles the following tokens:
      *
      * -S
      * -SV
-     * -S V
      * -S=V
      * -S1S2
-     * -S1S2 V
      * -SV1=V2
      *
      * -L
      * -LV
-     * -L V
      * -L=V
      * -l
      *
-     * @param token the command line token to handle
+     * Any other token, including an option whose attached value is not
+     * accepted, is classified as {@link Token#UNKNOWN}.
+     *
+     * @param t the token to classify, which starts with a dash
+     * @return the classified token
      */
-    private void handleShortAndLongOption( String token) throws ParseException
+    private Token classify(Session s, Token t)
     {
-         String t = Util.stripLeadingHyphens(token);
-
-         int pos = t.indexOf('=');
+        String token = t.text;
 
-        if (t.length() == 1)
+        if (t.isDoubleDash())
+        {
+            return classifyLongOption(s, t);
+        }
+        else if (token.length() == 2)
         {
             // -S
-            if (options.hasShortOption(t))
-            {
-                handleOption(options.getOption(t));
-            }
-            else
-            {
-                handleUnknownToken(token);
-            }
+            int ordinal = s.options.shortOrdinal(token.charAt(1));
+            return ordinal == -1 ? t.set(Token.UNKNOWN, -1, -1) : t.set(Token.OPTION, ordinal, -1);
         }
-        else if (pos == -1)
+        else if (t.eq == -1)
         {
             // no equal sign found (-xxx)
-            if (options.hasShortOption(t))
+            if (t.keyMatch(s.options) != -1)
             {
-                handleOption(options.getOption(t));
+                return t.set(Token.OPTION, t.keyMatch(s.options), -1);
             }
-            else if (!getMatchingLongOptions(t).isEmpty())
+            else if (t.longMatch(s.options, allowPartialMatching) != -1)
             {
                 // -L or -l
-                handleLongOptionWithoutEqual(token);
-            }
-            else
-            {
-                // look for a long prefix (-Xmx512m)
-                 String opt = getLongPrefix(t);
-
-                if (opt != null && options.getOption(opt).acceptsArg())
-                {
-                    handleOption(options.getOption(opt));
-                    currentOption.addValueForProcessing(t.substring(opt.length()));
-                    currentOption = null;
-                }
-                else if (isJavaProperty(t))
-                {
-                    // -SV1 (-Dflag)
-                    handleOption(options.getOption(t.substring(0, 1)));
-                    currentOption.addValueForProcessing(t.substring(1));
-                    currentOption = null;
-                }
-                else
-                {
-                    // -S1S2S3 or -S1S2V
-                    handleConcatenatedOptions(token);
-                }
+                return classifyLongOption(s, t);
             }
-        }
-        else
-        {
-            // equal sign found (-xxx=yyy)
-             String opt = t.substring(0, pos);
-             String value = t.substring(pos + 1);
 
-            if (opt.length() == 1)
+            // look for a long prefix (-Xmx512m)
+            int prefix = t.longPrefix(s.options);
+            if (prefix != -1)
             {
-                // -S=V
-                 Option option = options.getOption(opt);
-                if (option != null && option.acceptsArg())
-                {
-                    handleOption(option);
-                    currentOption.addValueForProcessing(value);
-                    currentOption = null;
-                }
-                else
+                int ordinal = s.options.longTarget(prefix);
+                if (s.options.option(ordinal).acceptsArg())
                 {
-                    handleUnknownToken(token);
+                    return t.set(Token.OPTION_VALUE, ordinal, 1 + s.options.longName(prefix).length());
                 }
             }
-            else if (isJavaProperty(opt))
+
+            int ordinal = javaProperty(s, token.charAt(1));
+            if (ordinal != -1)
             {
-                // -SV1=V2 (-Dkey=value)
-                handleOption(options.getOption(opt.substring(0, 1)));
-                currentOption.addValueForProcessing(opt.substring(1));
-                currentOption.addValueForProcessing(value);
-                currentOption = null;
+                // -SV1 (-Dflag)
+                return t.set(Token.OPTION_VALUE, ordinal, 2);
             }
-            else
+
+            // -S1S2S3 or -S1S2V
+            return t.set(Token.CLUSTER, -1, -1);
+        }
+        else if (t.eq == 1)
+        {
+            // -=V
+            return t.set(Token.UNKNOWN, -1, -1);
+        }
+        else if (t.eq == 2)
+        {
+            // -S=V
+            int ordinal = s.options.resolve(token.charAt(1));
+            if (ordinal != -1 && s.options.option(ordinal).acceptsArg())
             {
-                // -L=V or -l=V
-                handleLongOptionWithEqual(token);
+                return t.set(Token.OPTION_VALUE, ordinal, 3);
             }
+            return t.set(Token.UNKNOWN, -1, -1);
         }
+
+        int ordinal = javaProperty(s, token.charAt(1));
+        if (ordinal != -1)
+        {
+            // -SV1=V2 (-Dkey=value)
+            return t.set(Token.PROPERTY, ordinal, 2);
+        }
+
+        // -L=V or -l=V
+        return classifyLongOption(s, t);
     }
 
     /**
-     * Search for a prefix that is the long name of an option (-Xmx512m)
+     * Classifies the following tokens:
      *
-     * @param token
+     * --L
+     * --L=V
+     * --l
+     * --l=V
+     * -L
+     * -L=V
+     * -l
+     * -l=V
+     *
+     * @param t the token to classify
+     * @return the classified token
      */
-    private String getLongPrefix( String token)
+    private Token classifyLongOption(Session s, Token t)
     {
-         String t = Util.stripLeadingHyphens(token);
-
-        int i;
-        String opt = null;
-        for (i = t.length() - 2; i > 1; i--)
+        int ordinal = t.longMatch(s.options, allowPartialMatching);
+        if (ordinal == -1)
         {
-             String prefix = t.substring(0, i);
-            if (options.hasLongOption(prefix))
-            {
-                opt = prefix;
-                break;
-            }
+            return t.set(Token.UNKNOWN, -1, -1);
+        }
+        else if (ordinal == CompiledOptions.AMBIGUOUS)
+        {
+            return t.set(Token.AMBIGUOUS, -1, -1);
+        }
+        else if (t.eq == -1)
+        {
+            return t.set(Token.OPTION, ordinal, -1);
+        }
+        else if (s.options.option(ordinal).acceptsArg())
+        {
+            return t.set(Token.OPTION_VALUE, ordinal, t.eq + 1);
         }
-        
-        return opt;
+        return t.set(Token.UNKNOWN, -1, -1);
     }
 
     /**
-     * Check if the specified token is a Java-like property (-Dkey=value).
+     * Check if the specified character is the name of an option taking
+     * Java-like properties (-Dkey=value).
+     *
+     * @return the ordinal of the option, or -1 if it doesn't take properties
      */
-    private boolean isJavaProperty( String token)
+    private int javaProperty(Session s, char opt)
     {
-         String opt = token.substring(0, 1);
-         Option option = options.getOption(opt);
+        int ordinal = s.options.resolve(opt);
+        if (ordinal == -1)
+        {
+            return -1;
+        }
 
-        return option != null && (option.getArgs() >= 2 || option.getArgs() == Option.UNLIMITED_VALUES);
+        Option option = s.options.option(ordinal);
+        return option.getArgs() >= 2 || option.getArgs() == Option.UNLIMITED_VALUES ? ordinal : -1;
     }
 
-    private void handleOption(Option option) throws ParseException
+    private void handleOption(Session s, int ordinal) throws ParseException
     {
         // check the previous option before handling the next one
-        checkRequiredArgs();
+        checkRequiredArgs(s);
 
-        option = (Option) option.clone();
+        // record the occurrence, the definition is not copied and the values go to the list of the option
+        Option option = s.options.option(ordinal);
+        boolean records = s.records(ordinal);
+        if (records && s.targets != null && s.last[ordinal] == null)
+        {
+            s.missingTargets--;
+        }
+        Occurrence occurrence = s.newOccurrence(ordinal);
 
-        updateRequiredOptions(option);
+        if (s.targets == null)
+        {
+            updateRequiredOptions(s, ordinal);
+        }
 
-        cmd.addOption(option);
+        if (records)
+        {
+            s.cmd.addOccurrence(occurrence);
+            if (s.recorder != null)
+            {
+                s.recorder.step(ParsePlanCache.OPTION, ordinal, 0, 0);
+            }
+        }
 
         if (option.hasArg())
         {
-            currentOption = option;
+            s.currentOption = occurrence;
         }
         else
         {
-            currentOption = null;
+            s.currentOption = null;
         }
     }
 
     /**
-     * Removes the option or its group from the list of expected elements.
+     * Removes the option or its group from the set of expected elements.
      *
-     * @param option
+     * @param ordinal the ordinal of the option
      */
-    private void updateRequiredOptions( Option option) throws AlreadySelectedException
+    private void updateRequiredOptions(Session s, int ordinal) throws AlreadySelectedException
     {
+        Option option = s.options.option(ordinal);
         if (option.isRequired())
         {
-            expectedOpts.remove(option.getKey());
+            clear(s.expected, s.options.requiredSlot(ordinal));
         }
 
-        // if the option is in an OptionGroup make that option the selected option of the group
-        if (options.getOptionGroup(option) != null)
+        // if the option is in an OptionGroup make that option the selected option of the group,
+        // the group being found through the key of the option like Options.getOptionGroup does
+        int key = s.options.keyOf(ordinal);
+        int group = key == -1 ? -1 : s.options.groupOf(key);
+        if (group != -1)
         {
-             OptionGroup group = options.getOptionGroup(option);
-
-            if (group.isRequired())
+            if (s.options.group(group).isRequired())
             {
-                expectedOpts.remove(group);
+                // a group required several times is removed once per occurrence of its options
+                for ( int slot : s.options.groupSlots(group))
+                {
+                    if (clear(s.expected, slot))
+                    {
+                        break;
+                    }
+                }
             }
 
-            group.setSelected(option);
+            if (s.selected[group] == -1)
+            {
+                s.selected[group] = key;
+            }
+            else if (s.selected[group] != key)
+            {
+                String selected = s.options.option(s.selected[group]).getKey();
+                throw new AlreadySelectedException(s.options.group(group).withSelected(selected), option);
+            }
         }
     }
 
     /**
-     * Returns a list of matching option strings for the given token, depending
-     * on the selected partial matching policy.
+     * Clears the specified bit if it is set.
      *
-     * @param token the token (may contain leading dashes)
-     * @return the list of matching option strings or an empty list if no matching option could be found
+     * @param bits the bitset
+     * @param bit the bit to clear, or -1
+     * @return true if the bit was set
      */
-    private List<String> getMatchingLongOptions( String token)
+    private static boolean clear(long[] bits, int bit)
     {
-        if (allowPartialMatching)
+        if (bit == -1 || (bits[bit >>> 6] & 1L << bit) == 0)
         {
-            return options.getMatchingOptions(token);
+            return false;
         }
-        else
+        bits[bit >>> 6] &= ~(1L << bit);
+        return true;
+    }
+
+    /**
+     * Returns the required options and groups that were not found on the
+     * command line, in declaration order.
+     */
+    private static List<Object> missingOptions(Session s)
+    {
+        List<Object> missing = null;
+        for ( int word = 0; word < s.expected.length; word++)
         {
-            List<String> matches = new ArrayList<String>(1);
-            if (options.hasLongOption(token))
+            for (long bits = s.expected[word]; bits != 0; bits &= bits - 1)
             {
-                Option option = options.getOption(token);
-                matches.add(option.getLongOpt());
+                if (missing == null)
+                {
+                    missing = new ArrayList<Object>();
+                }
+                missing.add(s.options.required(64 * word + Long.numberOfTrailingZeros(bits)));
             }
-
-            return matches;
         }
+        return missing == null ? Collections.<Object>emptyList() : missing;
     }
 
     /**
@@ -754,28 +1146,246 @@ public class DefaultParser implements CommandLineParser
      * @throws ParseException if there are any problems encountered
      *                        while parsing the command line token.
      */
-    protected void handleConcatenatedOptions( String token) throws ParseException
+    private void handleConcatenatedOptions(Session s, String token) throws ParseException
     {
         for (int i = 1; i < token.length(); i++)
         {
-             String ch = String.valueOf(token.charAt(i));
+            int ordinal = s.options.resolve(token.charAt(i));
 
-            if (options.hasOption(ch))
+            if (ordinal != -1)
             {
-                handleOption(options.getOption(ch));
+                handleOption(s, ordinal);
 
-                if (currentOption != null && token.length() != i + 1)
+                if (s.currentOption != null && token.length() != i + 1)
                 {
                     // add the trail as an argument of the option
-                    currentOption.addValueForProcessing(token.substring(i + 1));
+                    s.currentOption.addValue(token, i + 1, token.length());
+                    if (s.recorder != null)
+                    {
+                        s.recorder.value(s.currentOption.option, s.position, i + 1, -1);
+                    }
                     break;
                 }
             }
             else
             {
-                handleUnknownToken(stopAtNonOption && i > 1 ? token.substring(i) : token);
+                handleUnknownToken(s, s.stopAtNonOption && i > 1 ? token.substring(i) : token);
                 break;
             }
         }
     }
+
+    /**
+     * The state of a single call to {@link DefaultParser#parse}. Keeping it
+     * out of the parser is what makes the parser safe to share. A session
+     * kept by a {@link ParseContext} is reset and reused for each parse, and
+     * recycles its occurrences and value lists.
+     */
+    static final class Session
+    {
+        /** The compiled options the command line is parsed against. */
+        final CompiledOptions options;
+
+        /**
+         * Flag indicating how unrecognized tokens are handled. <tt>true</tt> to stop
+         * the parsing and add the remaining tokens to the args list.
+         * <tt>false</tt> to throw an exception.
+         */
+        boolean stopAtNonOption;
+
+        /** The command-line instance. */
+        final CommandLine cmd = new CommandLine();
+
+        /** The required options and groups expected to be found when parsing the command line, as a bitset of their positions. */
+        final long[] expected;
+
+        /** The token currently processed. */
+        String currentToken;
+
+        /** The occurrence of the last option parsed. */
+        Occurrence currentOption;
+
+        /** The classification of the token currently processed, reused for every token. */
+        final Token token = new Token();
+
+        /** The position of the token currently processed. */
+        int position;
+
+        /** The recorder of the plan of the parse, or null. */
+        ParsePlanCache.Recorder recorder;
+
+        /** The cache of the token classifications for the options, or null. */
+        TokenCache tokenCache;
+
+        /** The version of the option definitions when the parse started, checked against the cached tokens. */
+        long definitionVersion;
+
+        /**
+         * Flag indicating if tokens should no longer be analyzed and simply added as arguments of the command line.
+         * Once it is set, the remaining tokens are copied to the command line at once.
+         */
+        boolean skipParsing;
+
+        /** The ordinal of the option selected in each option group, or -1 if none has been selected yet. */
+        final int[] selected;
+
+        /** The last occurrence of each option, by ordinal, whose value list the next occurrence shares. */
+        final Occurrence[] last;
+
+        /** Whether the occurrences and value lists are recycled by the next parse. */
+        private final boolean reusable;
+
+        /** Whether the parse only validates the command line: nothing is added to {@link #cmd}. */
+        final boolean validating;
+
+        /** The ordinals of the options to extract as a bitset, or null to parse the whole command line. */
+        long[] targets;
+
+        /** The number of options to extract that have not occurred yet. */
+        int missingTargets;
+
+        /** The single occurrence reused for every option not recorded, only counting its values. */
+        private Occurrence counter;
+
+        /** The occurrences created by the previous parses, recycled when the session is reusable. */
+        private final List<Occurrence> pool;
+
+        /** The number of occurrences of the pool used by the current parse. */
+        private int used;
+
+        /** The value list of each option, by ordinal, recycled when the session is reusable. */
+        private final List<String>[] values;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Session(CompiledOptions options, boolean reusable, boolean validating)
+        {
+            this.options = options;
+            this.reusable = reusable;
+            this.validating = validating;
+            this.expected = new long[(options.requiredCount() + 63) >>> 6];
+            this.selected = new int[options.groupCount()];
+            this.last = new Occurrence[options.size()];
+            this.pool = reusable ? new ArrayList<Occurrence>() : null;
+            this.values = reusable ? new List[options.size()] : null;
+            reset();
+        }
+
+        /**
+         * Clears the state of the previous parse, keeping the storage allocated for it.
+         */
+        void reset()
+        {
+            cmd.clear();
+            currentToken = null;
+            currentOption = null;
+            skipParsing = false;
+            Arrays.fill(expected, 0);
+            for ( int i = 0; i < options.requiredCount(); i++)
+            {
+                expected[i >>> 6] |= 1L << i;
+            }
+            Arrays.fill(selected, -1);
+            Arrays.fill(last, null);
+
+            if (reusable)
+            {
+                used = 0;
+                for ( List<String> list : values)
+                {
+                    if (list != null)
+                    {
+                        list.clear();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Tells if the occurrences of the option with the specified ordinal
+         * are recorded in the command line.
+         */
+        boolean records(int ordinal)
+        {
+            return !validating && (targets == null || (targets[ordinal >>> 6] & 1L << ordinal) != 0);
+        }
+
+        /**
+         * Tells if the arguments are recorded in the command line.
+         */
+        boolean recordsArgs()
+        {
+            return !validating && targets == null;
+        }
+
+        /**
+         * Tells if all the options to extract have occurred and received their values.
+         */
+        boolean extracted()
+        {
+            return targets != null && missingTargets == 0 && currentOption == null;
+        }
+
+        /**
+         * Records a new occurrence of the option with the specified ordinal,
+         * sharing the value list of its previous occurrence.
+         *
+         * @param ordinal the ordinal of the option
+         * @return the occurrence, without values
+         */
+        Occurrence newOccurrence(int ordinal)
+        {
+            Option option = options.option(ordinal);
+            if (!records(ordinal))
+            {
+                // the previous occurrence has been checked, its values are no longer needed
+                if (counter == null)
+                {
+                    counter = new Occurrence(null, null);
+                }
+                return counter.resetCounter(option);
+            }
+            Occurrence previous = last[ordinal];
+
+            List<String> list = null;
+            if (previous != null)
+            {
+                list = previous.valueList();
+            }
+            else if (option.hasArg())
+            {
+                list = reusable ? valueList(ordinal) : new ArrayList<String>();
+            }
+
+            Occurrence occurrence;
+            if (!reusable)
+            {
+                occurrence = new Occurrence(option, list);
+            }
+            else if (used < pool.size())
+            {
+                occurrence = pool.get(used++).reset(option, list);
+            }
+            else
+            {
+                occurrence = new Occurrence(option, list);
+                pool.add(occurrence);
+                used++;
+            }
+
+            last[ordinal] = occurrence;
+            return occurrence;
+        }
+
+        /**
+         * Returns the recycled value list of the option with the specified ordinal.
+         */
+        private List<String> valueList(int ordinal)
+        {
+            if (values[ordinal] == null)
+            {
+                values[ordinal] = new ArrayList<String>();
+            }
+            return values[ordinal];
+        }
+    }
 }
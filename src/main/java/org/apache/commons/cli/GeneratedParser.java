@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.util.Properties;
+
+/**
+ * The base class of the parsers written by {@link ParserGenerator}.
+ * <p>
+ * A generated parser is specialised for a single set of options: the
+ * option definitions and the tables of their {@link CompiledOptions} form
+ * are written out as constants, and handed back to a
+ * {@link CompiledOptions} when the parser is created. Parsing a command
+ * line therefore needs no {@link Options} instance, and the names are not
+ * indexed again from the option maps. The time of a first parse in a new
+ * JVM is close to the one of {@link DefaultParser}, both loading the same
+ * grammar; see <code>ColdStartBenchmark</code> in the test sources.
+ * <p>
+ * The tokens are read by {@link DefaultParser}, with the same rules as
+ * {@link DefaultParser#parse(Options, String[], Properties, boolean)}, and
+ * the same {@link CommandLine} is returned or the same exception thrown.
+ * The partial matching of the long options is fixed when the parser is
+ * generated. A generated parser keeps no state between calls and may be
+ * shared between threads.
+ *
+ * @see ParserGenerator
+ * @since 1.5
+ */
+public abstract class GeneratedParser
+{
+    /** the parser reading the tokens */
+    private final DefaultParser parser;
+
+    /** the options the parser was generated for */
+    private final CompiledOptions options;
+
+    /**
+     * Creates a parser from the tables written by {@link ParserGenerator}.
+     * The tables are those of the {@link CompiledOptions} the parser was
+     * generated from, and are not copied.
+     *
+     * @param allowPartialMatching if partial matching of long options shall be enabled
+     * @param options the options, indexed by ordinal
+     * @param names the option keys and the long names, each listed once
+     * @param nameKey the ordinal of the option keyed by each name, or -1
+     * @param nameLong the index of the long name equal to each name, or -1
+     * @param nameTarget the ordinal each name resolves to
+     * @param groups the option groups, indexed by group ordinal
+     * @param groupOf the group ordinal of each option, or -1
+     * @param required the required option keys and groups, in declaration order
+     */
+    protected GeneratedParser(boolean allowPartialMatching, Option[] options, String[] names, int[] nameKey,
+                              int[] nameLong, int[] nameTarget, OptionGroup[] groups, int[] groupOf,
+                              Object[] required)
+    {
+        this.parser = new DefaultParser(allowPartialMatching);
+        this.options = new CompiledOptions(options, names, nameKey, nameLong, nameTarget, groups, groupOf, required);
+    }
+
+    /**
+     * Creates the definition of an option, for the tables of a generated parser.
+     *
+     * @param opt the short name of the option, or null
+     * @param longOpt the long name of the option, or null
+     * @param args the number of arguments, see {@link Option#getArgs()}
+     * @param optionalArg whether the argument is optional
+     * @param required whether the option is required
+     * @param separator the value separator, or 0
+     * @param argName the name of the argument, or null
+     * @param description the description of the option
+     * @param type the type of the values
+     * @return the option
+     */
+    protected static Option option(String opt, String longOpt, int args, boolean optionalArg, boolean required,
+                                   char separator, String argName, String description, Class<?> type)
+    {
+        Option option = new Option(opt, longOpt, false, description);
+        option.setArgs(args);
+        option.setOptionalArg(optionalArg);
+        option.setRequired(required);
+        option.setValueSeparator(separator);
+        option.setArgName(argName);
+        option.setType(type);
+        return option;
+    }
+
+    /**
+     * Creates an option group, for the tables of a generated parser.
+     *
+     * @param required whether the group is required
+     * @param members the options of the group, in the order they were added
+     * @return the group
+     */
+    protected static OptionGroup group(boolean required, Option... members)
+    {
+        OptionGroup group = new OptionGroup();
+        for (Option member : members)
+        {
+            group.addOption(member);
+        }
+        group.setRequired(required);
+        return group;
+    }
+
+    /**
+     * Parse the arguments.
+     *
+     * @param arguments the command line arguments
+     * @return the list of atomic option and value tokens
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     */
+    public CommandLine parse(String[] arguments) throws ParseException
+    {
+        return parse(arguments, null, false);
+    }
+
+    /**
+     * Parse the arguments.
+     *
+     * @param arguments       the command line arguments
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     *
+     * @return the list of atomic option and value tokens
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     */
+    public CommandLine parse(String[] arguments, boolean stopAtNonOption) throws ParseException
+    {
+        return parse(arguments, null, stopAtNonOption);
+    }
+
+    /**
+     * Parse the arguments and the properties.
+     *
+     * @param arguments       the command line arguments
+     * @param properties      command line option name-value pairs
+     * @param stopAtNonOption if <tt>true</tt> an unrecognized argument stops
+     *     the parsing and the remaining arguments are added to the
+     *     {@link CommandLine}s args list. If <tt>false</tt> an unrecognized
+     *     argument triggers a ParseException.
+     *
+     * @return the list of atomic option and value tokens
+     * @throws ParseException if there are any problems encountered
+     * while parsing the command line tokens.
+     */
+    public CommandLine parse(String[] arguments, Properties properties, boolean stopAtNonOption)
+            throws ParseException
+    {
+        return parser.parse(options, arguments, properties, stopAtNonOption);
+    }
+}
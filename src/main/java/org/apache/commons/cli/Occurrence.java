@@ -0,0 +1,309 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An occurrence of an option on a command line: the definition of the
+ * option and the values given to this occurrence.
+ * <p>
+ * The parser records an occurrence for each option it matches instead of
+ * cloning the whole definition. The {@link Option} copies exposed by
+ * {@link CommandLine#getOptions()} and {@link CommandLine#iterator()} are
+ * only created when they are asked for.
+ * <p>
+ * The occurrences of an option share a single append-only list of values,
+ * each occurrence owning a range of it. Values are only ever added to the
+ * last occurrence of an option, which owns the tail of the list, so a
+ * repeated option costs one list however often it occurs, and all its
+ * values can be read without visiting the occurrences.
+ */
+final class Occurrence implements Serializable
+{
+    /** The serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /** the definition of the option */
+    Option option;
+
+    /** the values of the option, shared with its other occurrences; null if the option takes no value */
+    private List<String> values;
+
+    /** the position of the first value of this occurrence in {@link #values} */
+    private int start;
+
+    /** the number of values of this occurrence, or -1 if it owns all of {@link #values} */
+    private int count;
+
+    /** the Option holding the values of this occurrence, created on demand */
+    private Option processed;
+
+    /** whether the values are only counted in {@link #count}, for a validation */
+    private boolean counting;
+
+    /**
+     * Creates an occurrence of the specified option, without values.
+     *
+     * @param option the definition of the option
+     * @param values the list receiving the values of the option, shared with
+     * its previous occurrences on the same command line, or null if the
+     * option takes no value
+     */
+    Occurrence(Option option, List<String> values)
+    {
+        reset(option, values);
+    }
+
+    /**
+     * Turns this instance into a new occurrence of the specified option,
+     * without values, so that it can be recycled by another parse.
+     *
+     * @param option the definition of the option
+     * @param values the list receiving the values of the option, or null
+     * @return this occurrence
+     */
+    Occurrence reset(Option option, List<String> values)
+    {
+        this.option = option;
+        this.values = values;
+        this.start = values == null ? 0 : values.size();
+        this.count = 0;
+        this.processed = null;
+        this.counting = false;
+        return this;
+    }
+
+    /**
+     * Turns this instance into a new occurrence of the specified option that
+     * only counts its values, for a parse that records nothing.
+     *
+     * @param option the definition of the option
+     * @return this occurrence
+     */
+    Occurrence resetCounter(Option option)
+    {
+        reset(option, null);
+        this.counting = true;
+        return this;
+    }
+
+    /**
+     * Creates an occurrence for an Option holding its own values, as added
+     * to a command line by {@link CommandLine.Builder#addOption(Option)}.
+     *
+     * @param processed the processed option
+     * @return the occurrence, sharing the values of the option
+     */
+    static Occurrence of(Option processed)
+    {
+        Occurrence occurrence = new Occurrence(processed, processed.getValuesList());
+        occurrence.start = 0;
+        occurrence.count = -1;
+        occurrence.processed = processed;
+        return occurrence;
+    }
+
+    /**
+     * Returns the values of this occurrence.
+     */
+    List<String> values()
+    {
+        if (values == null)
+        {
+            return Collections.<String>emptyList();
+        }
+        return count == -1 ? values : values.subList(start, start + count);
+    }
+
+    /**
+     * Returns the list holding the values of this occurrence and of the
+     * other occurrences of the option sharing it, or null if the option
+     * takes no value. The values of this occurrence are the range starting
+     * at {@link #start()}.
+     */
+    List<String> valueList()
+    {
+        return values;
+    }
+
+    /**
+     * Returns the position of the first value of this occurrence in the shared list.
+     */
+    int start()
+    {
+        return start;
+    }
+
+    /**
+     * Returns the number of values of this occurrence.
+     */
+    int valueCount()
+    {
+        if (counting)
+        {
+            return count;
+        }
+        if (values == null)
+        {
+            return 0;
+        }
+        return count == -1 ? values.size() : count;
+    }
+
+    /**
+     * Adds a value to this occurrence, splitting it with the value separator
+     * of the option like {@link Option#addValueForProcessing(String)}. This
+     * must be the last occurrence of the option.
+     *
+     * @param value the value
+     */
+    void addValueForProcessing(String value)
+    {
+        if (values == null)
+        {
+            // not expected from the parser, but a value must not be lost
+            values = new ArrayList<String>();
+        }
+        option.addValueForProcessing(value, values, start);
+        count = values.size() - start;
+    }
+
+    /**
+     * Adds the characters <code>from..to</code> of a token as a value of
+     * this occurrence, like {@link #addValueForProcessing(String)}. A
+     * counting occurrence doesn't cut the value out of the token.
+     *
+     * @param token the token holding the value
+     * @param from the position of the first character of the value
+     * @param to the position after the last character of the value
+     */
+    void addValue(String token, int from, int to)
+    {
+        if (counting)
+        {
+            count += option.countValues(token, from, to, count);
+        }
+        else
+        {
+            addValueForProcessing(token.substring(from, to));
+        }
+    }
+
+    /**
+     * Adds a command line token as a value of this occurrence, without the
+     * quotes {@link Util#stripLeadingAndTrailingQuotes(String)} removes.
+     *
+     * @param token the token
+     */
+    void addArgument(String token)
+    {
+        if (Util.isQuoted(token))
+        {
+            addValue(token, 1, token.length() - 1);
+        }
+        else
+        {
+            addValue(token, 0, token.length());
+        }
+    }
+
+    /**
+     * Adds a run of command line tokens as values of this occurrence, like
+     * {@link #addArgument(String)} does for each of them. This must be the
+     * last occurrence of an option
+     * taking an unlimited number of values.
+     *
+     * @param tokens the command line tokens
+     * @param from the position of the first token to add
+     * @param to the position after the last token to add
+     */
+    void addValues(String[] tokens, int from, int to)
+    {
+        if (from == to)
+        {
+            return;
+        }
+        if (option.hasValueSeparator())
+        {
+            for (int i = from; i < to; i++)
+            {
+                addArgument(tokens[i]);
+            }
+            return;
+        }
+
+        // no limit and no separator, each token is a value as it is
+        if (counting)
+        {
+            count += to - from;
+            return;
+        }
+        for (int i = from; i < to; i++)
+        {
+            values.add(Util.stripLeadingAndTrailingQuotes(tokens[i]));
+        }
+        count = values.size() - start;
+    }
+
+    /**
+     * Tells if this occurrence can accept more arguments.
+     */
+    boolean acceptsArg()
+    {
+        return option.acceptsArg(valueCount());
+    }
+
+    /**
+     * Tells if this occurrence requires more arguments to be valid.
+     */
+    boolean requiresArg()
+    {
+        return option.requiresArg(valueCount());
+    }
+
+    /**
+     * Returns a copy of the option holding the values of this occurrence.
+     * The same copy is returned on every call.
+     */
+    Option toOption()
+    {
+        if (processed == null)
+        {
+            processed = copyOption();
+        }
+        return processed;
+    }
+
+    /**
+     * Returns a new copy of the option holding the values of this occurrence.
+     */
+    Option copyOption()
+    {
+        if (processed != null)
+        {
+            return (Option) processed.clone();
+        }
+        Option copy = (Option) option.clone();
+        copy.getValuesList().addAll(values());
+        return copy;
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.commons.cli;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Describes a single command-line option.  It maintains
@@ -78,6 +79,9 @@ public class Option implements Cloneable, Serializable
     /** the character that is the value separator */
     private char valuesep;
 
+    /** the counter of the changes made to the attributes read by the parsers, shared with the options compiled along */
+    private transient volatile AtomicLong definitionVersion;
+
     /**
      * Private constructor used by the nested Builder class.
      * 
@@ -232,6 +236,7 @@ public class Option implements Cloneable, Serializable
     public void setLongOpt( String longOpt)
     {
         this.longOpt = longOpt;
+        definitionChanged();
     }
 
     /**
@@ -243,6 +248,7 @@ public class Option implements Cloneable, Serializable
     public void setOptionalArg( boolean optionalArg)
     {
         this.optionalArg = optionalArg;
+        definitionChanged();
     }
 
     /**
@@ -312,6 +318,7 @@ public class Option implements Cloneable, Serializable
     public void setRequired( boolean required)
     {
         this.required = required;
+        definitionChanged();
     }
 
     /**
@@ -362,6 +369,7 @@ public class Option implements Cloneable, Serializable
     public void setArgs( int num)
     {
         this.numberOfArgs = num;
+        definitionChanged();
     }
 
     /**
@@ -373,6 +381,7 @@ public class Option implements Cloneable, Serializable
     public void setValueSeparator( char sep)
     {
         this.valuesep = sep;
+        definitionChanged();
     }
 
     /**
@@ -415,18 +424,67 @@ public class Option implements Cloneable, Serializable
         return numberOfArgs;
     }
 
+    /**
+     * Returns the counter of the changes made to the attributes of this
+     * option that change how a command line is parsed: the long name, the
+     * number of arguments, whether the argument is optional, the value
+     * separator and whether the option is required. An option gets the
+     * counter of the first {@link CompiledOptions} it is compiled into, and
+     * shares it with the other options compiled along.
+     *
+     * @param counter the counter to use if this option has none yet
+     * @return the counter of this option
+     * @see CompiledOptions#definitionVersion()
+     */
+    synchronized AtomicLong definitionVersion(AtomicLong counter)
+    {
+        if (definitionVersion == null)
+        {
+            definitionVersion = counter;
+        }
+        return definitionVersion;
+    }
+
+    /**
+     * Records a change to an attribute read by the parsers. Nothing needs
+     * to be recorded before the option is compiled.
+     */
+    void definitionChanged()
+    {
+        AtomicLong counter = definitionVersion;
+        if (counter != null)
+        {
+            counter.incrementAndGet();
+        }
+    }
+
     /**
      * Adds the specified value to this Option.
      * 
      * @param value is a/the value of this Option
      */
     void addValueForProcessing( String value)
+    {
+        addValueForProcessing(value, values, 0);
+    }
+
+    /**
+     * Adds the specified value to the values of an occurrence of this
+     * Option on a command line. The values of the occurrence are the tail
+     * <code>values[from..]</code> of a list that may be shared with the
+     * previous occurrences of the Option.
+     *
+     * @param value is a/the value of this Option
+     * @param values the list the value is appended to
+     * @param from the position of the first value of the occurrence in the list
+     */
+    void addValueForProcessing( String value,  List<String> values,  int from)
     {
         if (numberOfArgs == UNINITIALIZED)
         {
             throw new RuntimeException("NO_ARGS_ALLOWED");
         }
-        processValue(value);
+        processValue(value, values, from);
     }
 
     /**
@@ -437,10 +495,12 @@ public class Option implements Cloneable, Serializable
      * added as a single token.
      *
      * @param value The String to be processed.
+     * @param values The list the tokens are appended to.
+     * @param from The position of the first value of this Option in the list.
      *
      * @since 1.0.1
      */
-    private void processValue(String value)
+    private void processValue(String value,  List<String> values,  int from)
     {
         // this Option has a separator character
         if (hasValueSeparator())
@@ -455,13 +515,13 @@ public class Option implements Cloneable, Serializable
             while (index != -1)
             {
                 // next value to be added 
-                if (values.size() == numberOfArgs - 1)
+                if (values.size() - from == numberOfArgs - 1)
                 {
                     break;
                 }
 
                 // store
-                add(value.substring(0, index));
+                add(value.substring(0, index), values, from);
 
                 // parse
                 value = value.substring(index + 1);
@@ -472,7 +532,7 @@ public class Option implements Cloneable, Serializable
         }
 
         // store the actual value or the last value that has been parsed
-        add(value);
+        add(value, values, from);
     }
 
     /**
@@ -481,12 +541,14 @@ public class Option implements Cloneable, Serializable
      * add the value.  Otherwise, throw a runtime exception.
      *
      * @param value The value to be added to this Option
+     * @param values The list the value is appended to
+     * @param from The position of the first value of this Option in the list
      *
      * @since 1.0.1
      */
-    private void add( String value)
+    private void add( String value,  List<String> values,  int from)
     {
-        if (!acceptsArg())
+        if (!acceptsArg(values.size() - from))
         {
             throw new RuntimeException("Cannot add value, list full.");
         }
@@ -495,6 +557,53 @@ public class Option implements Cloneable, Serializable
         values.add(value);
     }
 
+    /**
+     * Counts the values {@link #addValueForProcessing(String, List, int)}
+     * would add for the characters <code>from..to</code> of a token, without
+     * storing them: the value is split with the value separator in the
+     * same way, and the same exceptions are thrown.
+     *
+     * @param token the token holding the value
+     * @param from the position of the first character of the value
+     * @param to the position after the last character of the value
+     * @param valueCount the number of values the occurrence already holds
+     * @return the number of values the value is split into
+     */
+    int countValues( String token,  int from,  int to,  int valueCount)
+    {
+        if (numberOfArgs == UNINITIALIZED)
+        {
+            throw new RuntimeException("NO_ARGS_ALLOWED");
+        }
+
+        int added = 0;
+        if (hasValueSeparator())
+        {
+            char sep = getValueSeparator();
+            int index = token.indexOf(sep, from);
+            while (index != -1 && index < to && valueCount + added != numberOfArgs - 1)
+            {
+                checkRoom(valueCount + added++);
+                index = token.indexOf(sep, index + 1);
+            }
+        }
+
+        checkRoom(valueCount + added);
+        return added + 1;
+    }
+
+    /**
+     * Throws the exception of {@link #add(String, List, int)} if an
+     * occurrence holding the specified number of values is full.
+     */
+    private void checkRoom( int valueCount)
+    {
+        if (!acceptsArg(valueCount))
+        {
+            throw new RuntimeException("Cannot add value, list full.");
+        }
+    }
+
     /**
      * Returns the specified value of this Option or 
      * <code>null</code> if there is no value.
@@ -664,6 +773,7 @@ public class Option implements Cloneable, Serializable
         {
              Option option = (Option) super.clone();
             option.values = new ArrayList<String>(values);
+            option.definitionVersion = null;
             return option;
         }
         catch ( CloneNotSupportedException cnse)
@@ -691,7 +801,19 @@ public class Option implements Cloneable, Serializable
      */
     boolean acceptsArg()
     {
-        return (hasArg() || hasArgs() || hasOptionalArg()) && (numberOfArgs <= 0 || values.size() < numberOfArgs);
+        return acceptsArg(values.size());
+    }
+
+    /**
+     * Tells if the option can accept more arguments once it holds the
+     * specified number of values.
+     *
+     * @param valueCount the number of values already given to the option
+     * @return false if the maximum number of arguments is reached
+     */
+    boolean acceptsArg( int valueCount)
+    {
+        return (hasArg() || hasArgs() || hasOptionalArg()) && (numberOfArgs <= 0 || valueCount < numberOfArgs);
     }
 
     /**
@@ -701,6 +823,18 @@ public class Option implements Cloneable, Serializable
      * @since 1.3
      */
     boolean requiresArg()
+    {
+        return requiresArg(values.size());
+    }
+
+    /**
+     * Tells if the option requires more arguments to be valid once it holds
+     * the specified number of values.
+     *
+     * @param valueCount the number of values already given to the option
+     * @return false if the option doesn't require more arguments
+     */
+    boolean requiresArg( int valueCount)
     {
         if (optionalArg)
         {
@@ -708,9 +842,9 @@ public class Option implements Cloneable, Serializable
         }
         if (numberOfArgs == UNLIMITED_VALUES)
         {
-            return values.isEmpty();
+            return valueCount == 0;
         }
-        return acceptsArg();
+        return acceptsArg(valueCount);
     }
     
     /**
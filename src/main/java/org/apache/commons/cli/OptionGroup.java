@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A group of mutually exclusive options.
@@ -40,6 +41,9 @@ public class OptionGroup implements Serializable
     /** specified whether this group is required */
     private boolean required;
 
+    /** the counter of the changes made to whether this group is required, shared with the options compiled along */
+    private transient volatile AtomicLong definitionVersion;
+
     /**
      * Add the specified <code>Option</code> to this group.
      *
@@ -103,6 +107,23 @@ public class OptionGroup implements Serializable
         }
     }
 
+    /**
+     * Returns a copy of this group with the specified option selected. The
+     * parser reports a conflicting selection with such a copy, so that the
+     * groups of a shared {@link Options} definition are never modified.
+     *
+     * @param selected the key of the selected option
+     * @return a copy of this group
+     */
+    OptionGroup withSelected( String selected)
+    {
+        OptionGroup group = new OptionGroup();
+        group.optionMap.putAll(optionMap);
+        group.required = required;
+        group.selected = selected;
+        return group;
+    }
+
     /**
      * @return the selected option name
      */
@@ -117,6 +138,29 @@ public class OptionGroup implements Serializable
     public void setRequired( boolean required)
     {
         this.required = required;
+        AtomicLong counter = definitionVersion;
+        if (counter != null)
+        {
+            counter.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the counter of the changes made to whether this group is
+     * required, taken from the first {@link CompiledOptions} the group is
+     * compiled into.
+     *
+     * @param counter the counter to use if this group has none yet
+     * @return the counter of this group
+     * @see CompiledOptions#definitionVersion()
+     */
+    synchronized AtomicLong definitionVersion(AtomicLong counter)
+    {
+        if (definitionVersion == null)
+        {
+            definitionVersion = counter;
+        }
+        return definitionVersion;
     }
 
     /**
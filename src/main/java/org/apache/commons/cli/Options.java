@@ -21,7 +21,6 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +56,9 @@ public class Options implements Serializable
     /** a map of the option groups */
     private  Map<String, OptionGroup> optionGroups = new LinkedHashMap<String, OptionGroup>();
 
+    /** the compiled form of this instance, discarded whenever an option is added */
+    private transient volatile CompiledOptions compiled;
+
     /**
      * Add the specified option group.
      *
@@ -81,6 +83,7 @@ public class Options implements Serializable
             optionGroups.put(option.getKey(), group);
         }
 
+        compiled = null;
         return this;
     }
 
@@ -91,7 +94,7 @@ public class Options implements Serializable
      */
     Collection<OptionGroup> getOptionGroups()
     {
-        return new HashSet<OptionGroup>(optionGroups.values());
+        return compile().getOptionGroups();
     }
 
     /**
@@ -207,9 +210,32 @@ public class Options implements Serializable
 
         shortOpts.put(key, opt);
 
+        compiled = null;
         return this;
     }
 
+    /**
+     * Returns an immutable snapshot of this instance, suitable for sharing
+     * between threads and for repeated parsing.
+     * <p>
+     * The snapshot is cached and reused until another option or group is
+     * added to this instance.
+     * </p>
+     *
+     * @return the compiled form of these options
+     * @since 1.5
+     */
+    public CompiledOptions compile()
+    {
+        CompiledOptions result = compiled;
+        if (result == null)
+        {
+            result = CompiledOptions.of(shortOpts, longOpts, requiredOpts, optionGroups);
+            compiled = result;
+        }
+        return result;
+    }
+
     /**
      * Retrieve a read-only list of options in this set
      *
@@ -264,6 +290,10 @@ public class Options implements Serializable
 
     /**
      * Returns the options with a long name starting with the name specified.
+     * <p>
+     * The long names are looked up in the {@link #compile() compiled} form,
+     * which is built once after options have been added.
+     * </p>
      * 
      * @param opt the partial name of the option
      * @return the options matching the partial name specified, or an empty list if none matches
@@ -271,25 +301,7 @@ public class Options implements Serializable
      */
     public List<String> getMatchingOptions(String opt)
     {
-        opt = Util.stripLeadingHyphens(opt);
-        
-         List<String> matchingOpts = new ArrayList<String>();
-
-        // for a perfect match return the single option only
-        if (longOpts.keySet().contains(opt))
-        {
-            return Collections.singletonList(opt);
-        }
-
-        for ( String longOpt : longOpts.keySet())
-        {
-            if (longOpt.startsWith(opt))
-            {
-                matchingOpts.add(longOpt);
-            }
-        }
-        
-        return matchingOpts;
+        return compile().getMatchingOptions(opt);
     }
 
     /**
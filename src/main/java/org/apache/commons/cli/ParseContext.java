@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+/**
+ * A reusable {@link CommandLine} and the working state {@link DefaultParser}
+ * needs to fill it, sized from the options once.
+ * <p>
+ * {@link DefaultParser#parse(ParseContext, String[])} resets the context
+ * and parses into it, recycling the storage of the previous parse. Once a
+ * few command lines have been parsed, a parse allocates nothing but the
+ * values cut out of a token, as with <code>--file=name</code>.
+ * <p>
+ * {@link DefaultParser#validate(ParseContext, String[], boolean)} checks a
+ * command line with the storage of the context as well, leaving its
+ * command line untouched.
+ * <p>
+ * The command line of a context is overwritten by the next parse: it must
+ * be read, or copied, before the context is used again. A context is
+ * bound to the options it was created with, later changes to an
+ * {@link Options} instance are not seen. It must not be used by several
+ * threads at the same time, but a {@link DefaultParser} can be shared by
+ * threads having each their own context.
+ *
+ * @since 1.5
+ */
+public final class ParseContext
+{
+    /** the state of the parse, reset and reused for each command line */
+    final DefaultParser.Session session;
+
+    /** the state of the validations, created by the first one */
+    private DefaultParser.Session validation;
+
+    /**
+     * Creates a context for parsing command lines against the specified options.
+     *
+     * @param options the options, compiled when the context is created
+     */
+    public ParseContext(Options options)
+    {
+        this(options.compile());
+    }
+
+    /**
+     * Creates a context for parsing command lines against the specified options.
+     *
+     * @param options the compiled options
+     */
+    public ParseContext(CompiledOptions options)
+    {
+        session = new DefaultParser.Session(options, true, false);
+    }
+
+    /**
+     * Returns the options command lines are parsed against.
+     *
+     * @return the compiled options
+     */
+    public CompiledOptions getOptions()
+    {
+        return session.options;
+    }
+
+    /**
+     * Returns the command line filled by the last parse with this context.
+     *
+     * @return the command line of the context
+     */
+    public CommandLine getCommandLine()
+    {
+        return session.cmd;
+    }
+
+    /**
+     * Returns the state of the validations with this context, creating it
+     * the first time.
+     */
+    DefaultParser.Session validation()
+    {
+        if (validation == null)
+        {
+            validation = new DefaultParser.Session(session.options, false, true);
+        }
+        return validation;
+    }
+
+    /**
+     * Empties the command line of this context, keeping the storage
+     * allocated for it. A parse does it itself before parsing.
+     */
+    public void reset()
+    {
+        session.reset();
+    }
+}
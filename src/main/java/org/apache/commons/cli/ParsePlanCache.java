@@ -0,0 +1,467 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the way {@link DefaultParser} parsed command lines of a given
+ * shape, for applications whose command lines share the same layout and
+ * only differ by their values: <code>--user X --job Y --priority Z</code>.
+ * <p>
+ * The shape of a command line is the sequence of its tokens starting with
+ * a dash, <code>--name=value</code> tokens counting by their name only, and
+ * the positions of the other tokens. The tokens after <code>--</code> are
+ * not part of the shape. After a successful parse, the parser keeps a plan
+ * of what it did with each token: the options it recorded, the values it
+ * gave them and the arguments it kept. A command line of the same shape is
+ * checked against the plan and filled following it in a single pass,
+ * without resolving the tokens again. A command line that doesn't match
+ * the plan of its shape is parsed as usual, and replaces that plan.
+ * <p>
+ * A value split by the value separator of its option may fill its option
+ * or not depending on its text: such values are part of the shape as they
+ * are. The plans depend on the option definitions and are not used once one
+ * of the options has been modified. Command lines are only
+ * planned when there are no default properties.
+ * <p>
+ * The plans are kept in a table of a fixed number of slots, one slot per
+ * shape. This class is thread-safe.
+ *
+ * @see DefaultParser#parse(ParsePlanCache, String[], boolean)
+ * @since 1.5
+ */
+public final class ParsePlanCache
+{
+    /** a new occurrence of the option {@code a} */
+    static final int OPTION = 0;
+
+    /** the value {@code b..c} of the token {@code a} added to the last occurrence, {@code c} being -1 for the end of the token */
+    static final int VALUE = 1;
+
+    /** the token {@code a} added as an argument to the last occurrence */
+    static final int ARGUMENT = 2;
+
+    /** the tokens {@code a..b} added as values to the last occurrence */
+    static final int VALUES = 3;
+
+    /** the token {@code a} from its character {@code b} added to the arguments of the command line */
+    static final int ARG = 4;
+
+    /** the tokens from {@code a} to the end added to the arguments of the command line */
+    static final int ARGS = 5;
+
+    /** the number of ints per step of a plan */
+    static final int STEP = 4;
+
+    /** the hash of a token that doesn't start with a dash */
+    private static final int VALUE_HASH = 0x9e3779b9;
+
+    /** How a command line of a given shape is parsed. */
+    static final class Plan
+    {
+        /** the hash of the shape */
+        final int shape;
+
+        /** the {@link CompiledOptions#definitionVersion() version of the option definitions} the plan was made with */
+        final long version;
+
+        /** whether the plan was made with partial matching of the long options */
+        final boolean partial;
+
+        /** the stopAtNonOption flag of the parse */
+        final boolean stopAtNonOption;
+
+        /** whether the shape ends with "--", any number of tokens following */
+        final boolean open;
+
+        /**
+         * The tokens of the shape: the text a token must have, the text it
+         * must start with if {@link #prefix} is set for its position, or null
+         * for a token that must not start with a dash.
+         */
+        final String[] tokens;
+
+        /** the positions of the shape where the token must only start with the text of {@link #tokens} */
+        final boolean[] prefix;
+
+        /** the steps of the parse, {@link #STEP} ints each: an operation and its operands */
+        final int[] steps;
+
+        Plan(int shape, long version, boolean partial, boolean stopAtNonOption, boolean open, String[] tokens,
+             boolean[] prefix, int[] steps)
+        {
+            this.shape = shape;
+            this.version = version;
+            this.partial = partial;
+            this.stopAtNonOption = stopAtNonOption;
+            this.open = open;
+            this.tokens = tokens;
+            this.prefix = prefix;
+            this.steps = steps;
+        }
+
+        /**
+         * Tells if the specified command line has the shape of this plan.
+         */
+        boolean matches(String[] arguments, long version, boolean partial, boolean stopAtNonOption)
+        {
+            if (this.version != version || this.partial != partial || this.stopAtNonOption != stopAtNonOption)
+            {
+                return false;
+            }
+            if (open ? arguments.length < tokens.length : arguments.length != tokens.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < tokens.length; i++)
+            {
+                String token = tokens[i];
+                String argument = arguments[i];
+                if (token == null)
+                {
+                    if (DefaultParser.isOptionLike(argument))
+                    {
+                        return false;
+                    }
+                }
+                else if (prefix[i] ? !argument.startsWith(token) : !token.equals(argument))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Records the steps of a parse to make its plan.
+     */
+    static final class Recorder
+    {
+        /** the command line parsed */
+        private final String[] arguments;
+
+        /** the positions of the tokens that must keep their text */
+        private final boolean[] exact;
+
+        /** the positions of the tokens only checked up to their '=' */
+        private final boolean[] prefix;
+
+        /** the steps recorded */
+        private int[] steps = new int[4 * STEP];
+
+        /** the number of ints used in {@link #steps} */
+        private int size;
+
+        Recorder(String[] arguments)
+        {
+            this.arguments = arguments;
+            this.exact = new boolean[arguments.length];
+            this.prefix = new boolean[arguments.length];
+        }
+
+        /**
+         * Records a step.
+         */
+        void step(int operation, int a, int b, int c)
+        {
+            if (size == steps.length)
+            {
+                steps = Arrays.copyOf(steps, 2 * size);
+            }
+            steps[size++] = operation;
+            steps[size++] = a;
+            steps[size++] = b;
+            steps[size++] = c;
+        }
+
+        /**
+         * Records a value given to an occurrence.
+         *
+         * @param option the option receiving the value
+         * @param position the position of the token holding the value
+         * @param from the start of the value in the token
+         * @param to the end of the value in the token, -1 for the end of the token
+         */
+        void value(Option option, int position, int from, int to)
+        {
+            step(VALUE, position, from, to);
+            String token = arguments[position];
+            if (!option.hasValueSeparator() && to == -1 && token.startsWith("--") && from == token.indexOf('=') + 1)
+            {
+                // --name=value, the value doesn't change how the token is parsed
+                prefix[position] = true;
+            }
+            else
+            {
+                exact[position] = true;
+            }
+        }
+
+        /**
+         * Records tokens given as arguments to an occurrence.
+         *
+         * @param option the option receiving the arguments
+         * @param from the position of the first token
+         * @param to the position after the last token
+         */
+        void arguments(Option option, int from, int to)
+        {
+            if (to == from + 1)
+            {
+                step(ARGUMENT, from, 0, 0);
+            }
+            else
+            {
+                step(VALUES, from, to, 0);
+            }
+            if (option.hasValueSeparator())
+            {
+                // the number of values depends on the text of the tokens
+                Arrays.fill(exact, from, to, true);
+            }
+        }
+
+        /**
+         * Makes the plan of the parse recorded.
+         */
+        Plan plan(int shape, long version, boolean partial, boolean stopAtNonOption)
+        {
+            int length = shapeLength(arguments);
+            String[] tokens = new String[length];
+            boolean[] prefixes = new boolean[length];
+            for (int i = 0; i < length; i++)
+            {
+                String token = arguments[i];
+                if (DefaultParser.isOptionLike(token) && prefix[i] && !exact[i])
+                {
+                    tokens[i] = token.substring(0, token.indexOf('=') + 1);
+                    prefixes[i] = true;
+                }
+                else if (DefaultParser.isOptionLike(token) || exact[i])
+                {
+                    tokens[i] = token;
+                }
+            }
+            boolean open = length > 0 && "--".equals(arguments[length - 1]);
+            return new Plan(shape, version, partial, stopAtNonOption, open, tokens, prefixes, Arrays.copyOf(steps, size));
+        }
+    }
+
+    /** the options the command lines are parsed against */
+    final CompiledOptions options;
+
+    /** the slots of the table, the number of slots being a power of two */
+    private final AtomicReferenceArray<Plan> slots;
+
+    /** the number of command lines filled from a plan */
+    private final LongAdder hits = new LongAdder();
+
+    /** the number of command lines parsed without a plan */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache of the plans of the command lines parsed against the
+     * specified options.
+     *
+     * @param options the options, compiled when the cache is created
+     * @param maximumSize the maximum number of plans cached, rounded up to a power of two
+     */
+    public ParsePlanCache(Options options, int maximumSize)
+    {
+        this(options.compile(), maximumSize);
+    }
+
+    /**
+     * Creates a cache of the plans of the command lines parsed against the
+     * specified options.
+     *
+     * @param options the compiled options
+     * @param maximumSize the maximum number of plans cached, rounded up to a power of two
+     */
+    public ParsePlanCache(CompiledOptions options, int maximumSize)
+    {
+        if (maximumSize < 1 || maximumSize > 1 << 30)
+        {
+            throw new IllegalArgumentException("The maximum size must be between 1 and 2^30: " + maximumSize);
+        }
+        this.options = options;
+        this.slots = new AtomicReferenceArray<Plan>(maximumSize == 1 ? 1 : Integer.highestOneBit(maximumSize - 1) << 1);
+    }
+
+    /**
+     * Returns the options the command lines are parsed against.
+     *
+     * @return the compiled options
+     */
+    public CompiledOptions getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * Returns the number of tokens of a command line that are part of its
+     * shape: the tokens up to the first "--" included.
+     */
+    private static int shapeLength(String[] arguments)
+    {
+        for (int i = 0; i < arguments.length; i++)
+        {
+            if ("--".equals(arguments[i]))
+            {
+                return i + 1;
+            }
+        }
+        return arguments.length;
+    }
+
+    /**
+     * Returns the hash of the shape of a command line.
+     */
+    static int shape(String[] arguments, boolean stopAtNonOption)
+    {
+        int hash = stopAtNonOption ? 1 : 0;
+        for (String token : arguments)
+        {
+            if (!DefaultParser.isOptionLike(token))
+            {
+                hash = 31 * hash + VALUE_HASH;
+                continue;
+            }
+
+            int eq = token.startsWith("--") ? token.indexOf('=') : -1;
+            if (eq == -1)
+            {
+                hash = 31 * hash + token.hashCode();
+            }
+            else
+            {
+                // --name=value counts by its name
+                int h = 0;
+                for (int i = 0; i <= eq; i++)
+                {
+                    h = 31 * h + token.charAt(i);
+                }
+                hash = 31 * hash + h;
+            }
+
+            if ("--".equals(token))
+            {
+                break;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the slot of the specified shape.
+     */
+    private int slot(int shape)
+    {
+        return (shape ^ shape >>> 16) & (slots.length() - 1);
+    }
+
+    /**
+     * Looks up the plan of a command line.
+     *
+     * @param arguments the command line
+     * @param shape the hash of its shape
+     * @param version the version of the option definitions
+     * @param partial whether the long options can be partially matched
+     * @param stopAtNonOption the stopAtNonOption flag of the parse
+     * @return the plan, or null if there is none for the command line
+     */
+    Plan get(String[] arguments, int shape, long version, boolean partial, boolean stopAtNonOption)
+    {
+        Plan plan = slots.get(slot(shape));
+        if (plan != null && plan.shape == shape && plan.matches(arguments, version, partial, stopAtNonOption))
+        {
+            hits.increment();
+            return plan;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches a plan, replacing the plan in its slot.
+     *
+     * @param plan the plan
+     */
+    void put(Plan plan)
+    {
+        slots.lazySet(slot(plan.shape), plan);
+    }
+
+    /**
+     * Returns the number of command lines filled from a plan.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of command lines that had no plan and were parsed
+     * as usual.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of the command lines filled from a plan.
+     *
+     * @return the hit rate, between 0 and 1, or 0 if nothing was parsed yet
+     */
+    public double getHitRate()
+    {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the maximum number of plans cached.
+     *
+     * @return the number of slots of the cache
+     */
+    public int getMaximumSize()
+    {
+        return slots.length();
+    }
+
+    /**
+     * Removes all the cached plans. The statistics are kept.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < slots.length(); i++)
+        {
+            slots.set(i, null);
+        }
+    }
+}
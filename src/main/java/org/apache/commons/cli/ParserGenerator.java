@@ -0,0 +1,502 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes the source of a parser specialised for a set of options.
+ * <p>
+ * The class written extends {@link GeneratedParser}. The definitions of
+ * the options and the name tables {@link CompiledOptions} derives from them
+ * are written out as constants, so that a program can parse its command
+ * line without building its {@link Options} and compiling them first:
+ * <pre>
+ *     new ParserGenerator(PatternOptionBuilder.parsePattern("vp:!f/")).generate("com.example.MainParser", dir);
+ *     ...
+ *     CommandLine line = new com.example.MainParser().parse(args);
+ * </pre>
+ * The generator can also be run from the command line or from the build,
+ * see {@link #main(String[])} and the <code>generate-parser</code> target
+ * of the Ant build. The parser has to be generated again when the options
+ * change.
+ *
+ * @since 1.5
+ */
+public class ParserGenerator
+{
+    /** the options the parser is generated for */
+    private final CompiledOptions options;
+
+    /** Flag indicating if the generated parser matches partial long options. */
+    private final boolean allowPartialMatching;
+
+    /** the group ordinal of each option group */
+    private final Map<OptionGroup, Integer> groupOrdinals = new IdentityHashMap<OptionGroup, Integer>();
+
+    /**
+     * Creates a generator for the specified options, the generated parser
+     * matching partial long options like {@link DefaultParser#DefaultParser()}.
+     *
+     * @param options the options
+     * @throws IllegalArgumentException if a parser can't be written for the options
+     */
+    public ParserGenerator(Options options)
+    {
+        this(options, true);
+    }
+
+    /**
+     * Creates a generator for the specified options and partial matching policy.
+     *
+     * @param options the options
+     * @param allowPartialMatching if the generated parser matches partial long options
+     * @throws IllegalArgumentException if a parser can't be written for the options
+     */
+    public ParserGenerator(Options options, boolean allowPartialMatching)
+    {
+        this.options = options.compile();
+        this.allowPartialMatching = allowPartialMatching;
+
+        for (int g = 0; g < this.options.groupCount(); g++)
+        {
+            groupOrdinals.put(this.options.group(g), g);
+            for (Option member : this.options.group(g).getOptions())
+            {
+                ordinal(member);
+            }
+        }
+        for (Option option : this.options.getOptions())
+        {
+            if (option.getType() != null && ((Class<?>) option.getType()).getCanonicalName() == null)
+            {
+                throw new IllegalArgumentException("The type of the option " + option.getKey()
+                        + " can't be named in a source file: " + option.getType());
+            }
+        }
+    }
+
+    /**
+     * Returns the ordinal of the specified option.
+     *
+     * @throws IllegalArgumentException if the option is not part of the options
+     */
+    private int ordinal(Option option)
+    {
+        for (int i = 0; i < options.size(); i++)
+        {
+            if (options.option(i) == option)
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The option " + option.getKey()
+                + " of a group has been replaced by another option with the same name");
+    }
+
+    /**
+     * Writes the source of the parser class to the specified directory,
+     * in the subdirectory of its package.
+     *
+     * @param className the fully qualified name of the class
+     * @param directory the root directory of the sources
+     * @return the file written
+     * @throws IOException if the file can't be written
+     */
+    public File generate(String className, File directory) throws IOException
+    {
+        File file = new File(directory, className.replace('.', File.separatorChar) + ".java");
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("Cannot create the directory " + parent);
+        }
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            generate(className, out);
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes the source of the parser class.
+     *
+     * @param className the fully qualified name of the class
+     * @param out the destination of the source
+     * @throws IOException if the source can't be written
+     */
+    public void generate(String className, Appendable out) throws IOException
+    {
+        int dot = className.lastIndexOf('.');
+        String simpleName = className.substring(dot + 1);
+
+        StringBuilder src = new StringBuilder();
+        src.append("// Generated by ").append(ParserGenerator.class.getName()).append(", do not edit.\n\n");
+        if (dot != -1)
+        {
+            src.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+        src.append("import ").append(GeneratedParser.class.getName()).append(";\n");
+        src.append("import ").append(Option.class.getName()).append(";\n");
+        src.append("import ").append(OptionGroup.class.getName()).append(";\n\n");
+        src.append("/**\n");
+        src.append(" * A parser of the command line options:\n");
+        src.append(" * <pre>\n");
+        for (Option option : options.getOptions())
+        {
+            src.append(" *     ").append(escapeHtml(option.toString())).append('\n');
+        }
+        src.append(" * </pre>\n");
+        src.append(" */\n");
+        src.append("public final class ").append(simpleName).append(" extends GeneratedParser\n");
+        src.append("{\n");
+
+        writeTables(src);
+
+        src.append("    public ").append(simpleName).append("()\n");
+        src.append("    {\n");
+        src.append("        super(").append(allowPartialMatching);
+        src.append(", OPTIONS, NAMES, NAME_KEY, NAME_LONG, NAME_TARGET, GROUPS, GROUP_OF, REQUIRED);\n");
+        src.append("    }\n");
+        src.append("}\n");
+        out.append(src);
+    }
+
+    /**
+     * Writes the option definitions and the tables of the parser.
+     */
+    private void writeTables(StringBuilder src)
+    {
+        src.append("    /** the options, indexed by ordinal */\n");
+        src.append("    private static final Option[] OPTIONS = {\n");
+        for (Option option : options.getOptions())
+        {
+            src.append("        option(").append(literal(option.getOpt()));
+            src.append(", ").append(literal(option.getLongOpt()));
+            src.append(", ").append(option.getArgs());
+            src.append(", ").append(option.hasOptionalArg());
+            src.append(", ").append(option.isRequired());
+            src.append(", ").append(literal(option.getValueSeparator()));
+            src.append(", ").append(literal(option.getArgName()));
+            src.append(", ").append(literal(option.getDescription()));
+            src.append(", ").append(typeLiteral((Class<?>) option.getType())).append("),\n");
+        }
+        src.append("    };\n\n");
+
+        src.append("    /** the option groups, indexed by group ordinal */\n");
+        src.append("    private static final OptionGroup[] GROUPS = {\n");
+        for (int g = 0; g < options.groupCount(); g++)
+        {
+            OptionGroup group = options.group(g);
+            src.append("        group(").append(group.isRequired());
+            for (Option member : group.getOptions())
+            {
+                src.append(", OPTIONS[").append(ordinal(member)).append(']');
+            }
+            src.append("),\n");
+        }
+        src.append("    };\n\n");
+
+        src.append("    /** the required option keys and groups, in declaration order */\n");
+        src.append("    private static final Object[] REQUIRED = {");
+        for (int slot = 0; slot < options.requiredCount(); slot++)
+        {
+            Object required = options.required(slot);
+            src.append(slot == 0 ? " " : ", ");
+            if (required instanceof OptionGroup)
+            {
+                src.append("GROUPS[").append(groupOrdinals.get(required)).append(']');
+            }
+            else
+            {
+                src.append(literal(String.valueOf(required)));
+            }
+        }
+        src.append(options.requiredCount() == 0 ? "};\n\n" : " };\n\n");
+
+        String[] names = new String[options.nameCount()];
+        int[] nameKey = new int[names.length];
+        int[] nameLong = new int[names.length];
+        int[] nameTarget = new int[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = literal(options.name(i));
+            nameKey[i] = options.nameKey(i);
+            nameLong[i] = options.nameLong(i);
+            nameTarget[i] = options.nameTarget(i);
+        }
+
+        src.append("    /** the option keys and the long names, each listed once */\n");
+        src.append("    private static final String[] NAMES = {");
+        for (int i = 0; i < names.length; i++)
+        {
+            src.append(i == 0 ? " " : ", ").append(names[i]);
+        }
+        src.append(names.length == 0 ? "};\n\n" : " };\n\n");
+
+        src.append("    /** the ordinal of the option keyed by each name, or -1 */\n");
+        writeInts(src, "NAME_KEY", nameKey);
+
+        src.append("    /** the index of the long name equal to each name, or -1 */\n");
+        writeInts(src, "NAME_LONG", nameLong);
+
+        src.append("    /** the ordinal each name resolves to */\n");
+        writeInts(src, "NAME_TARGET", nameTarget);
+
+        int[] groupOf = new int[options.size()];
+        for (int i = 0; i < options.size(); i++)
+        {
+            groupOf[i] = options.groupOf(i);
+        }
+
+        src.append("    /** the group ordinal of each option, or -1 */\n");
+        writeInts(src, "GROUP_OF", groupOf);
+    }
+
+    private static void writeInts(StringBuilder src, String name, int[] values)
+    {
+        src.append("    private static final int[] ").append(name).append(" = {");
+        for (int i = 0; i < values.length; i++)
+        {
+            src.append(i == 0 ? " " : ", ").append(values[i]);
+        }
+        src.append(values.length == 0 ? "};\n\n" : " };\n\n");
+    }
+
+    /**
+     * Returns the class literal of the specified type, or "null".
+     */
+    private static String typeLiteral(Class<?> type)
+    {
+        return type == null ? "null" : type.getCanonicalName() + ".class";
+    }
+
+    /**
+     * Returns the Java literal of the specified string, or "null".
+     */
+    static String literal(String s)
+    {
+        if (s == null)
+        {
+            return "null";
+        }
+
+        StringBuilder buf = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++)
+        {
+            escape(buf, s.charAt(i), '"');
+        }
+        return buf.append('"').toString();
+    }
+
+    /**
+     * Returns the Java literal of the specified character.
+     */
+    static String literal(char c)
+    {
+        StringBuilder buf = new StringBuilder("'");
+        escape(buf, c, '\'');
+        return buf.append('\'').toString();
+    }
+
+    /**
+     * Appends a character of a literal, escaped if needed. The line
+     * terminators are never written as unicode escapes, which the compiler
+     * would translate before reading the literal.
+     */
+    private static void escape(StringBuilder buf, char c, char quote)
+    {
+        switch (c)
+        {
+            case '\b':
+                buf.append("\\b");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\f':
+                buf.append("\\f");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\\':
+                buf.append("\\\\");
+                break;
+            default:
+                if (c == quote)
+                {
+                    buf.append('\\').append(c);
+                }
+                else if (c < ' ' || c > '~')
+                {
+                    buf.append(String.format("\\u%04x", (int) c));
+                }
+                else
+                {
+                    buf.append(c);
+                }
+        }
+    }
+
+    /**
+     * Escapes the text of a javadoc comment.
+     */
+    private static String escapeHtml(String s)
+    {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == '<')
+            {
+                buf.append("&lt;");
+            }
+            else if (c == '>')
+            {
+                buf.append("&gt;");
+            }
+            else if (c == '&')
+            {
+                buf.append("&amp;");
+            }
+            else if (c == '*' && i + 1 < s.length() && s.charAt(i + 1) == '/')
+            {
+                buf.append("*&#47;");
+                i++;
+            }
+            else if (c == '@' || c == '\\' || c < ' ' || c > '~')
+            {
+                buf.append("&#").append((int) c).append(';');
+            }
+            else
+            {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Writes the source of a parser. The options are given either as a
+     * {@link PatternOptionBuilder} pattern, or as a static method without
+     * parameters returning them:
+     * <pre>
+     * java org.apache.commons.cli.ParserGenerator --pattern "vp:!f/" --class com.example.MainParser -d src
+     * java org.apache.commons.cli.ParserGenerator --options com.example.Main#options --class com.example.MainParser -d src
+     * </pre>
+     * An empty option value counts as missing, so that the arguments can be
+     * passed from build properties left empty.
+     *
+     * @param args the command line arguments
+     * @throws Exception if the options can't be loaded or the source can't be written
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Options options = new Options();
+        options.addOption(Option.builder("p").longOpt("pattern").hasArg().argName("pattern")
+                .desc("the PatternOptionBuilder pattern of the options").build());
+        options.addOption(Option.builder("o").longOpt("options").hasArg().argName("class#method")
+                .desc("the static method returning the options, 'options' if only the class is given").build());
+        options.addOption(Option.builder("c").longOpt("class").hasArg().argName("name")
+                .desc("the fully qualified name of the parser class").build());
+        options.addOption(Option.builder("d").longOpt("directory").hasArg().argName("dir")
+                .desc("the root directory of the source written, the current directory by default").build());
+        options.addOption(Option.builder("e").longOpt("exact")
+                .desc("disable the partial matching of the long options").build());
+
+        CommandLine line;
+        try
+        {
+            line = new DefaultParser().parse(options, args);
+            if (value(line, "class") == null || (value(line, "pattern") == null) == (value(line, "options") == null))
+            {
+                throw new ParseException("A class name and either a pattern or an options method are required");
+            }
+        }
+        catch (ParseException e)
+        {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp(ParserGenerator.class.getName(), options, true);
+            System.exit(1);
+            return;
+        }
+
+        Options parsed;
+        if (value(line, "pattern") != null)
+        {
+            parsed = PatternOptionBuilder.parsePattern(value(line, "pattern"));
+        }
+        else
+        {
+            parsed = loadOptions(value(line, "options"));
+        }
+
+        String directory = value(line, "directory");
+        File file = new ParserGenerator(parsed, !line.hasOption("exact"))
+                .generate(value(line, "class"), new File(directory == null ? "." : directory));
+        System.out.println("Generated " + file);
+    }
+
+    /**
+     * Returns the value of an option, or null if it is missing or empty.
+     */
+    private static String value(CommandLine line, String opt)
+    {
+        String value = line.getOptionValue(opt);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Calls the static method returning the options.
+     *
+     * @param method the name of the class and the method, separated by '#'
+     */
+    private static Options loadOptions(String method) throws Exception
+    {
+        int hash = method.indexOf('#');
+        String className = hash == -1 ? method : method.substring(0, hash);
+        String methodName = hash == -1 ? "options" : method.substring(hash + 1);
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Method factory = Class.forName(className, true, loader).getDeclaredMethod(methodName);
+        if (!Modifier.isStatic(factory.getModifiers()) || !Options.class.isAssignableFrom(factory.getReturnType()))
+        {
+            throw new IllegalArgumentException(method + " is not a static method returning the options");
+        }
+        factory.setAccessible(true);
+        return (Options) factory.invoke(null);
+    }
+}
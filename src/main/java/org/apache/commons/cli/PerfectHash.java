@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A minimal perfect hash over a fixed set of option names.
+ * <p>
+ * The names are spread over as many slots as there are names, without
+ * collisions, using the "hash and displace" scheme: a first hash of a
+ * name selects a bucket, and each bucket records the displacement that
+ * moves its names to free slots, or directly the slot of its single name.
+ * A lookup hashes the queried name once, reads the displacement of its
+ * bucket, and ends with a single equality check against the name of its
+ * slot. The tables are flat arrays indexed by bucket and by slot, whatever
+ * the number of names.
+ * <p>
+ * The hash starts from {@link String#hashCode()}, which strings cache, and
+ * the length of the name. Two names of the same length with the same hash
+ * code can't be told apart, no perfect hash is built for such a set and
+ * the callers fall back to their own lookup.
+ * <p>
+ * The lookups work on a range of a string, so that part of a token can be
+ * looked up without creating a substring.
+ */
+final class PerfectHash implements Serializable
+{
+    /** The serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /** the number of seeds tried before giving up */
+    private static final int SEEDS = 8;
+
+    /** the number of displacements tried for a bucket before trying another seed */
+    private static final int DISPLACEMENTS = 1 << 16;
+
+    /** the number of names */
+    private final int size;
+
+    /** the seed of the hash function */
+    private final long seed;
+
+    /** the displacement of each bucket; 0 for an empty bucket, -1 - slot for a bucket of a single name */
+    private final int[] displacement;
+
+    /** the index of the name placed in each slot */
+    private final int[] slotName;
+
+    /** the name placed in each slot, next to its index so that a lookup needn't go through the name index */
+    private final String[] slotNames;
+
+    /** the {@link String#hashCode()} of the name placed in each slot, checked before the name itself */
+    private final int[] slotHash;
+
+    /** the powers of 31 up to the length of the longest name, to take a prefix out of {@link String#hashCode()} */
+    private final int[] powers;
+
+    private PerfectHash(String[] names, long seed, int[] displacement, int[] slotName)
+    {
+        this.size = names.length;
+        this.seed = seed;
+        this.displacement = displacement;
+        this.slotName = slotName;
+
+        slotNames = new String[slotName.length];
+        slotHash = new int[slotName.length];
+        for (int slot = 0; slot < slotName.length; slot++)
+        {
+            slotNames[slot] = names[slotName[slot]];
+            slotHash[slot] = slotNames[slot].hashCode();
+        }
+
+        int longest = 0;
+        for (String name : names)
+        {
+            longest = Math.max(longest, name.length());
+        }
+        powers = new int[longest + 1];
+        powers[0] = 1;
+        for (int i = 1; i < powers.length; i++)
+        {
+            powers[i] = 31 * powers[i - 1];
+        }
+    }
+
+    /**
+     * Builds the perfect hash of the specified names, which must be distinct.
+     *
+     * @param names the names, the position of a name being its index
+     * @return the perfect hash, or null if none was found, which happens
+     * when two names of the same length have the same {@link String#hashCode()}
+     */
+    static PerfectHash of(String[] names)
+    {
+        // no seed separates two names of the same length and hash code, such a set is rejected before any search
+        long[] keys = new long[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            keys[i] = (long) names[i].length() << 32 | names[i].hashCode() & 0xffffffffL;
+        }
+        Arrays.sort(keys);
+        for (int i = 1; i < keys.length; i++)
+        {
+            if (keys[i] == keys[i - 1])
+            {
+                return null;
+            }
+        }
+
+        String[] copy = names.clone();
+        for (int seed = 0; seed < SEEDS; seed++)
+        {
+            PerfectHash hash = build(copy, seed);
+            if (hash != null)
+            {
+                return hash;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Places the names with the specified seed.
+     *
+     * @return the perfect hash, or null if a bucket couldn't be placed
+     */
+    private static PerfectHash build(String[] names, long seed)
+    {
+        int n = names.length;
+        long[] hashes = new long[n];
+        int[] bucketSize = new int[Math.max(n, 1)];
+        for (int i = 0; i < n; i++)
+        {
+            hashes[i] = hash(names[i].hashCode(), names[i].length(), seed);
+            bucketSize[bucket(hashes[i], n)]++;
+        }
+
+        // the names of each bucket, contiguous in the order of the buckets
+        int[] bucketStart = new int[n + 1];
+        for (int b = 0; b < n; b++)
+        {
+            bucketStart[b + 1] = bucketStart[b] + bucketSize[b];
+        }
+        int[] members = new int[n];
+        int[] filled = Arrays.copyOf(bucketStart, n);
+        for (int i = 0; i < n; i++)
+        {
+            members[filled[bucket(hashes[i], n)]++] = i;
+        }
+
+        // the largest buckets are placed first, while most slots are free; a sort on (size, bucket) packed in a long
+        long[] order = new long[n];
+        for (int b = 0; b < n; b++)
+        {
+            order[b] = (long) -bucketSize[b] << 32 | b;
+        }
+        Arrays.sort(order);
+
+        int[] displacement = new int[n];
+        int[] slotName = new int[n];
+        Arrays.fill(slotName, -1);
+        int[] slots = new int[n];
+        int freeSlot = 0;
+        for (long entry : order)
+        {
+            int b = (int) entry;
+            int size = bucketSize[b];
+            if (size == 0)
+            {
+                break;
+            }
+            int start = bucketStart[b];
+
+            if (size == 1)
+            {
+                // a single name takes the next free slot, without a second hash
+                while (slotName[freeSlot] != -1)
+                {
+                    freeSlot++;
+                }
+                slotName[freeSlot] = members[start];
+                displacement[b] = -1 - freeSlot;
+                continue;
+            }
+
+            int d = 1;
+            while (!place(hashes, members, start, size, d, slotName, slots))
+            {
+                if (++d > DISPLACEMENTS)
+                {
+                    return null;
+                }
+            }
+            displacement[b] = d;
+        }
+        return new PerfectHash(names, seed, displacement, slotName);
+    }
+
+    /**
+     * Tries to place the names of a bucket with the specified displacement.
+     *
+     * @return true if the names were placed in free and distinct slots
+     */
+    private static boolean place(long[] hashes, int[] members, int start, int size, int d, int[] slotName,
+                                 int[] slots)
+    {
+        int n = slotName.length;
+        for (int k = 0; k < size; k++)
+        {
+            int slot = slot(hashes[members[start + k]], d, n);
+            if (slotName[slot] != -1)
+            {
+                undo(slotName, slots, k);
+                return false;
+            }
+            slotName[slot] = members[start + k];
+            slots[k] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Frees the slots taken by the first names of a bucket that couldn't be placed.
+     */
+    private static void undo(int[] slotName, int[] slots, int count)
+    {
+        for (int k = 0; k < count; k++)
+        {
+            slotName[slots[k]] = -1;
+        }
+    }
+
+    /**
+     * Returns the index of the name <code>s[from..to)</code>, or -1 if it
+     * isn't one of the names. Nothing is allocated.
+     *
+     * @param s the string holding the name
+     * @param from the start of the name in <code>s</code>
+     * @param to the end of the name in <code>s</code>, exclusive
+     */
+    int find(String s, int from, int to)
+    {
+        int n = slotName.length;
+        int length = to - from;
+        if (n == 0 || length >= powers.length)
+        {
+            return -1;
+        }
+
+        int hashCode = hashCode(s, from, to);
+        long h = hash(hashCode, length, seed);
+        int d = displacement[bucket(h, n)];
+        if (d == 0)
+        {
+            return -1;
+        }
+
+        int slot = d < 0 ? -1 - d : slot(h, d, n);
+        if (slotHash[slot] != hashCode)
+        {
+            return -1;
+        }
+        // a whole string is compared with equals, which the JIT compiles to a vectorized comparison
+        String name = slotNames[slot];
+        boolean match = length == s.length() ? name.equals(s) : name.length() == length
+                && name.regionMatches(0, s, from, length);
+        return match ? slotName[slot] : -1;
+    }
+
+    /**
+     * Returns the number of names.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the {@link String#hashCode()} of <code>s[from..to)</code>. The
+     * hash code cached by the string is reused for a range ending the
+     * string, the usual case of a name after its leading hyphens, by taking
+     * out the contribution of the characters before the range.
+     */
+    private int hashCode(String s, int from, int to)
+    {
+        int h = 0;
+        if (to == s.length() && from < to - from)
+        {
+            for (int i = 0; i < from; i++)
+            {
+                h = 31 * h + s.charAt(i);
+            }
+            return s.hashCode() - h * powers[to - from];
+        }
+
+        for (int i = from; i < to; i++)
+        {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Spreads the hash code and the length of a name over 64 bits with the
+     * finalizer of MurmurHash3, started from the seed.
+     */
+    private static long hash(int hashCode, int length, long seed)
+    {
+        return mix(((long) length << 32 | hashCode & 0xffffffffL) ^ seed * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Returns the bucket of a hash: its high half, scaled to the number of
+     * names by a multiplication rather than a division.
+     */
+    private static int bucket(long h, int n)
+    {
+        return (int) ((h >>> 32) * n >>> 32);
+    }
+
+    /**
+     * Returns the slot a hash is moved to by a displacement: the high half of
+     * the product of the displaced hash and an odd constant, scaled to the
+     * number of names.
+     */
+    private static int slot(long h, int d, int n)
+    {
+        return (int) (((h ^ d * 0x9e3779b97f4a7c15L) * 0xbf58476d1ce4e5b9L >>> 32) * n >>> 32);
+    }
+
+    /**
+     * The 64 bit finalizer of MurmurHash3.
+     */
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+/**
+ * The classification of a command line token: its kind, the option it
+ * names and where its attached value starts.
+ * <p>
+ * {@link DefaultParser} resolves every token into such a record once and
+ * its handlers work from the record. The name lookups needed both to tell
+ * whether a token looks like an option and to handle it are done together
+ * by a single walk of the {@link TokenAutomaton} of the options, or one by
+ * one until the options have built their automaton, the first time one of
+ * them is needed, and memoized here. A parse session reuses
+ * a single instance for all its tokens. With a {@link TokenCache}, the
+ * record is restored from the classification cached for the token.
+ */
+final class Token
+{
+    /** a token that is not an option: an argument, or a token to report as unrecognized */
+    static final int UNKNOWN = 0;
+
+    /** an option without an attached value: --L, -L, -l, -S */
+    static final int OPTION = 1;
+
+    /** an option with an attached value: --L=V, -L=V, -S=V, -LV, -SV */
+    static final int OPTION_VALUE = 2;
+
+    /** a Java-like property with a key and a value: -Dkey=value */
+    static final int PROPERTY = 3;
+
+    /** concatenated short options: -S1S2S3 or -S1S2V */
+    static final int CLUSTER = 4;
+
+    /** a partial long option matching several options */
+    static final int AMBIGUOUS = 5;
+
+    /** the text of the token */
+    String text;
+
+    /** the position of the first '=' in the token, or -1 */
+    int eq;
+
+    /** the end of the option name: the position of the first '=', or the length of the token */
+    int end;
+
+    /** the kind of the token, set by the classification */
+    int kind;
+
+    /** the ordinal of the option named by the token, if any */
+    int ordinal;
+
+    /** the start of the attached value, if any */
+    int valueStart;
+
+    /** whether the token was classified from a {@link TokenCache}, {@link #kind} and {@link #argument} being set */
+    boolean cached;
+
+    /** for a cached token, whether it is taken as a value by an option expecting one */
+    boolean argument;
+
+    /** whether the names of the token have been looked up */
+    private boolean scanned;
+
+    /** the ordinal the name matches exactly as a long name, see {@link CompiledOptions#matchLong} */
+    private int longExact;
+
+    /** the ordinal the name matches as a partial long name, see {@link CompiledOptions#matchLong} */
+    private int longPartial;
+
+    /** the ordinal of the option keyed by the name after the first dash */
+    private int keyMatch;
+
+    /** the index of the longest long name prefixing the token after the first dash */
+    private int longPrefix;
+
+    /**
+     * Prepares this record for a new token.
+     *
+     * @param text the token
+     * @return this record
+     */
+    Token reset(String text)
+    {
+        this.text = text;
+        eq = text.indexOf('=');
+        end = eq == -1 ? text.length() : eq;
+        kind = UNKNOWN;
+        ordinal = -1;
+        valueStart = -1;
+        scanned = false;
+        cached = false;
+        return this;
+    }
+
+    /**
+     * Prepares this record for a token classified from a cache.
+     *
+     * @param entry the cached classification of the token
+     * @return this record
+     */
+    Token restore(TokenCache.Entry entry)
+    {
+        reset(entry.text);
+        set(entry.kind, entry.ordinal, entry.valueStart);
+        argument = entry.argument;
+        cached = true;
+        return this;
+    }
+
+    /**
+     * Sets the result of the classification.
+     *
+     * @return this record
+     */
+    Token set(int kind, int ordinal, int valueStart)
+    {
+        this.kind = kind;
+        this.ordinal = ordinal;
+        this.valueStart = valueStart;
+        return this;
+    }
+
+    /**
+     * Returns whether the token starts with two dashes.
+     */
+    boolean isDoubleDash()
+    {
+        return text.startsWith("--");
+    }
+
+    /**
+     * Looks up the names of the token in a single walk of the automaton of
+     * the options: the key and the exact and partial long names ending at
+     * the '=' or the end of the token, and for a token starting with a
+     * single dash the long names followed by a value, which the walk goes
+     * on for past the '='. All of them start after the leading dashes,
+     * except for a token starting with three dashes, whose key starts after
+     * the third one and which is looked up like the tokens classified
+     * before the options have built their automaton, by separate lookups.
+     */
+    private void scan(CompiledOptions options)
+    {
+        if (scanned)
+        {
+            return;
+        }
+        scanned = true;
+
+        TokenAutomaton automaton = text.startsWith("---") ? null : options.automaton();
+        if (automaton == null)
+        {
+            int from = isDoubleDash() ? 2 : 1;
+            longExact = options.matchLong(text, from, end, false);
+            longPartial = options.matchLong(text, from, end, true);
+            keyMatch = options.keyOrdinal(text, text.startsWith("---") ? 3 : from, end);
+            longPrefix = isDoubleDash() ? -1 : options.longestLongPrefix(text, 1, text.length(), 2, text.length() - 3);
+            return;
+        }
+
+        boolean doubleDash = isDoubleDash();
+        int from = doubleDash ? 2 : 1;
+
+        // a long name followed by a value (-Xmx512m) has 2 characters or more and leaves 2 for the value
+        int prefixEnd = doubleDash ? 0 : text.length() - 2;
+        int limit = Math.max(end, prefixEnd);
+
+        longExact = -1;
+        longPartial = -1;
+        keyMatch = -1;
+        longPrefix = -1;
+        int state = TokenAutomaton.START;
+        for (int pos = from; ; pos++)
+        {
+            if (pos == end)
+            {
+                keyMatch = automaton.key(state);
+                int index = automaton.longName(state);
+                longExact = index == -1 ? -1 : options.longTarget(index);
+                longPartial = automaton.partial(state);
+            }
+            if (pos - from >= 2 && pos <= prefixEnd && automaton.longName(state) != -1)
+            {
+                longPrefix = automaton.longName(state);
+            }
+            if (pos >= limit)
+            {
+                return;
+            }
+
+            state = automaton.next(state, text.charAt(pos));
+            if (state == -1)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Matches the name of the token, without its leading dashes and the
+     * "=value" part, against the long options.
+     *
+     * @return the ordinal of the option, -1 or {@link CompiledOptions#AMBIGUOUS}
+     */
+    int longMatch(CompiledOptions options, boolean partial)
+    {
+        scan(options);
+        return partial ? longPartial : longExact;
+    }
+
+    /**
+     * Looks up the name of the token after its first dash, without the
+     * "=value" part and any further leading dashes, as an option key.
+     *
+     * @return the ordinal of the option, or -1
+     */
+    int keyMatch(CompiledOptions options)
+    {
+        scan(options);
+        return keyMatch;
+    }
+
+    /**
+     * Finds the longest long name prefixing the token after its first dash
+     * that leaves room for a value of at least two characters (-Xmx512m).
+     * Only tokens starting with a single dash are looked up.
+     *
+     * @return the index of the long name, or -1
+     */
+    int longPrefix(CompiledOptions options)
+    {
+        scan(options);
+        return longPrefix;
+    }
+}
@@ -0,0 +1,640 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A deterministic automaton over the characters of the option names,
+ * recognizing the option keys and the long names at once.
+ * <p>
+ * The states are the prefixes of the names, the start state being the
+ * empty prefix. Each state tells which option has the prefix as its key,
+ * which long name is equal to it, and which option a partial long name
+ * equal to it designates. A single left-to-right walk over a token thus
+ * answers all the lookups {@link DefaultParser} needs to classify it: the
+ * option key, the exact or partial long name before the '=', and the
+ * longest long name followed by an attached value (<code>-Xmx512m</code>),
+ * where the separate lookups of {@link CompiledOptions} each scan the token
+ * again. The single character names keep their dense tables in
+ * {@link CompiledOptions}, they are the first row of the automaton.
+ * <p>
+ * The transitions are stored as a double array: the characters of the
+ * names are numbered, and the transition of the state <code>s</code> by
+ * the character numbered <code>c</code> leads to the state
+ * <code>base[s] + c</code> if that state records <code>s</code> as its
+ * parent. A step costs a few array reads whatever the number of
+ * transitions of the state, and the arrays stay close to the number of
+ * states. Once a prefix is shared by a single name, the rest of the name
+ * is a tail: its characters are stored as they are and walked one after
+ * the other, without a slot of the double array for each of them.
+ */
+final class TokenAutomaton
+{
+    /** the start state, for the empty prefix */
+    static final int START = 0;
+
+    /** the number of characters covered by the dense character table */
+    private static final int ASCII = 128;
+
+    /** the number of each ASCII character used by the names, 0 if unused */
+    private final int[] asciiCode = new int[ASCII];
+
+    /** the characters outside of the ASCII range used by the names, sorted */
+    private final char[] wideChars;
+
+    /** the number of each of {@link #wideChars} */
+    private final int[] wideCode;
+
+    /** the base of the transitions of each state */
+    private final int[] base;
+
+    /** the parent of each state, or -1 for a slot that is not a state */
+    private final int[] check;
+
+    /** the number of states, the positions in the tails included */
+    private final int states;
+
+    /** the ordinal of the option keyed by the prefix of each state, or -1 */
+    private final int[] key;
+
+    /** the index of the long name equal to the prefix of each state, or -1 */
+    private final int[] longName;
+
+    /**
+     * The ordinal the prefix of each state designates as a partial long
+     * name: the target of the long name equal to it, else of the single
+     * long name starting with it, {@link CompiledOptions#AMBIGUOUS} if
+     * several long names start with it, or -1 if none does.
+     */
+    private final int[] partial;
+
+    /**
+     * The characters of the tails, one after the other. A state
+     * <code>check.length + p</code> is the position in the tails reached
+     * once the character at <code>p</code> has been read.
+     */
+    private final char[] tailChars;
+
+    /** the tail each character of {@link #tailChars} belongs to */
+    private final int[] tailOf;
+
+    /** the ordinal of the option keyed by the name of each tail, or -1 */
+    private final int[] tailKey;
+
+    /** the index of the long name equal to the name of each tail, or -1 */
+    private final int[] tailLong;
+
+    /** the ordinal the prefixes in each tail designate as partial long names, or -1 */
+    private final int[] tailPartial;
+
+    /**
+     * Builds the automaton of the specified names.
+     * <p>
+     * The names are sorted, so that the names starting with the prefix of a
+     * state form a range and the children of the state are the runs of
+     * that range sharing their next character, each run ended by a binary
+     * search rather than a scan of its names. The states are placed
+     * breadth first, each one at the first base where all its children
+     * fall on free slots, the free slots being chained in a list so that
+     * the slots already taken are never visited again. A range holding a
+     * single name longer than the prefix ends in a tail.
+     *
+     * @param names the option keys and long names, each listed once
+     * @param nameKey the ordinal of the option keyed by each name, or -1
+     * @param nameLong the index of the long name equal to each name, or -1
+     * @param longTarget the ordinal each long name resolves to
+     */
+    TokenAutomaton(String[] names, int[] nameKey, int[] nameLong, int[] longTarget)
+    {
+        int count = names.length;
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++)
+        {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, new NameOrder(names));
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = boxed[i];
+        }
+
+        // the number of long names before each position in the sorted names, and the next long name from there
+        int[] longsBefore = new int[count + 1];
+        int[] nextLong = new int[count + 1];
+        for (int i = 0; i < count; i++)
+        {
+            longsBefore[i + 1] = longsBefore[i] + (nameLong[order[i]] != -1 ? 1 : 0);
+        }
+        nextLong[count] = count;
+        for (int i = count - 1; i >= 0; i--)
+        {
+            nextLong[i] = nameLong[order[i]] != -1 ? i : nextLong[i + 1];
+        }
+
+        // the states of the double array, breadth first: the range of the sorted names starting with the prefix,
+        // the length of the prefix, the character leading to the state and its children, queued together
+        int capacity = 2 * count + 1;
+        int[] rangeStart = new int[capacity];
+        int[] rangeEnd = new int[capacity];
+        int[] depth = new int[capacity];
+        char[] label = new char[capacity];
+        int[] firstChild = new int[capacity];
+        int[] childCount = new int[capacity];
+        rangeEnd[0] = count;
+        int queued = 1;
+        boolean[] ascii = new boolean[ASCII];
+        StringBuilder wide = new StringBuilder();
+        int tailLength = 0;
+        for (int q = 0; q < queued; q++)
+        {
+            int from = rangeStart[q];
+            int to = rangeEnd[q];
+            int d = depth[q];
+            firstChild[q] = queued;
+            if (to - from == 1 && names[order[from]].length() > d)
+            {
+                // the rest of a single name is a tail
+                tailLength += names[order[from]].length() - d;
+                continue;
+            }
+
+            // the runs of names sharing the character after the prefix, the name equal to the prefix coming first;
+            // the names being sorted, the end of a run is searched rather than scanned
+            for (int i = from < to && names[order[from]].length() == d ? from + 1 : from; i < to; )
+            {
+                char c = names[order[i]].charAt(d);
+                int end = names[order[to - 1]].charAt(d) == c ? to : runEnd(names, order, i, to, d, c);
+                if (queued == capacity)
+                {
+                    capacity *= 2;
+                    rangeStart = Arrays.copyOf(rangeStart, capacity);
+                    rangeEnd = Arrays.copyOf(rangeEnd, capacity);
+                    depth = Arrays.copyOf(depth, capacity);
+                    label = Arrays.copyOf(label, capacity);
+                    firstChild = Arrays.copyOf(firstChild, capacity);
+                    childCount = Arrays.copyOf(childCount, capacity);
+                }
+                rangeStart[queued] = i;
+                rangeEnd[queued] = end;
+                depth[queued] = d + 1;
+                label[queued++] = c;
+                if (c < ASCII)
+                {
+                    ascii[c] = true;
+                }
+                else
+                {
+                    wide.append(c);
+                }
+                i = end;
+            }
+            childCount[q] = queued - firstChild[q];
+        }
+
+        // number the characters of the transitions in ascending order, from 1
+        int codes = 0;
+        for (int c = 0; c < ASCII; c++)
+        {
+            if (ascii[c])
+            {
+                asciiCode[c] = ++codes;
+            }
+        }
+        char[] sorted = wide.toString().toCharArray();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+            {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        wideChars = Arrays.copyOf(sorted, distinct);
+        wideCode = new int[distinct];
+        for (int i = 0; i < distinct; i++)
+        {
+            wideCode[i] = ++codes;
+        }
+
+        // place the states, the children of a state at the first base where they all fall on free slots
+        int[] slot = new int[queued];
+        char[] tails = new char[tailLength];
+        int[] tailNumber = new int[tailLength];
+        int[] tailName = new int[count];
+        int tailCount = 0;
+        tailLength = 0;
+        Slots slots = new Slots(2 * (codes + 1));
+        slots.take(START, START);
+        int[] children = new int[codes];
+        for (int q = 0; q < queued; q++)
+        {
+            int k = childCount[q];
+            if (k == 0)
+            {
+                int from = rangeStart[q];
+                String name = rangeEnd[q] - from == 1 ? names[order[from]] : null;
+                if (name != null && name.length() > depth[q])
+                {
+                    name.getChars(depth[q], name.length(), tails, tailLength);
+                    Arrays.fill(tailNumber, tailLength, tailLength + name.length() - depth[q], tailCount);
+                    slots.base[slot[q]] = -1 - tailLength;
+                    tailLength += name.length() - depth[q];
+                    tailName[tailCount++] = order[from];
+                }
+                continue;
+            }
+
+            for (int j = 0; j < k; j++)
+            {
+                children[j] = code(label[firstChild[q] + j]);
+            }
+            int b = slots.findBase(children, k);
+            slots.base[slot[q]] = b;
+            for (int j = 0; j < k; j++)
+            {
+                slot[firstChild[q] + j] = b + children[j];
+                slots.take(b + children[j], slot[q]);
+            }
+        }
+        slots.check[START] = -1;
+
+        int size = 1;
+        for (int q = 0; q < queued; q++)
+        {
+            size = Math.max(size, slot[q] + 1);
+        }
+        base = Arrays.copyOf(slots.base, size);
+        check = Arrays.copyOf(slots.check, size);
+        key = new int[size];
+        longName = new int[size];
+        partial = new int[size];
+        Arrays.fill(key, -1);
+        Arrays.fill(longName, -1);
+        Arrays.fill(partial, -1);
+        for (int q = 0; q < queued; q++)
+        {
+            int from = rangeStart[q];
+            int to = rangeEnd[q];
+            int s = slot[q];
+            if (from < to && names[order[from]].length() == depth[q])
+            {
+                key[s] = nameKey[order[from]];
+                longName[s] = nameLong[order[from]];
+            }
+
+            int longCount = longsBefore[to] - longsBefore[from];
+            if (longName[s] != -1)
+            {
+                partial[s] = longTarget[longName[s]];
+            }
+            else if (longCount == 1)
+            {
+                partial[s] = longTarget[nameLong[order[nextLong[from]]]];
+            }
+            else if (longCount > 1)
+            {
+                partial[s] = CompiledOptions.AMBIGUOUS;
+            }
+        }
+
+        tailChars = Arrays.copyOf(tails, tailLength);
+        tailOf = Arrays.copyOf(tailNumber, tailLength);
+        tailKey = new int[tailCount];
+        tailLong = new int[tailCount];
+        tailPartial = new int[tailCount];
+        for (int t = 0; t < tailCount; t++)
+        {
+            tailKey[t] = nameKey[tailName[t]];
+            tailLong[t] = nameLong[tailName[t]];
+            tailPartial[t] = tailLong[t] == -1 ? -1 : longTarget[tailLong[t]];
+        }
+        this.states = queued + tailLength;
+    }
+
+    /**
+     * Returns the end of the run of the sorted names from <code>from</code>
+     * having the character <code>c</code> at the specified depth, by a
+     * binary search of the first name with a greater character.
+     */
+    private static int runEnd(String[] names, int[] order, int from, int to, int depth, char c)
+    {
+        int low = from + 1;
+        int high = to - 1;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (names[order[middle]].charAt(depth) == c)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Orders the indexes of names by the names.
+     */
+    private static final class NameOrder implements Comparator<Integer>
+    {
+        private final String[] names;
+
+        NameOrder(String[] names)
+        {
+            this.names = names;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b)
+        {
+            return names[a].compareTo(names[b]);
+        }
+    }
+
+    /**
+     * The slots of the double array while the automaton is built, the free
+     * ones being chained in ascending order.
+     */
+    private static final class Slots
+    {
+        /** the number of vain tries after which a free slot is no longer tried for a first child */
+        private static final int MAX_MISSES = 16;
+
+        /** the base of the transitions of the state in each slot */
+        int[] base = new int[0];
+
+        /** the parent of the state in each slot, or -1 for a free slot */
+        int[] check = new int[0];
+
+        /** the next free slot after each free slot, or -1 */
+        private int[] nextFree = new int[0];
+
+        /** the previous free slot before each free slot, or -1 */
+        private int[] prevFree = new int[0];
+
+        /** the number of times each free slot was tried in vain for the first child of a state */
+        private int[] misses = new int[0];
+
+        /** whether each slot is chained in the list of the free slots */
+        private boolean[] listed = new boolean[0];
+
+        /** the first and the last free slot, or -1 */
+        private int head = -1;
+        private int tail = -1;
+
+        Slots(int capacity)
+        {
+            grow(capacity);
+        }
+
+        /**
+         * Returns the first base at which the specified codes all fall on
+         * free slots, growing the slots if needed. Only the free slots are
+         * tried for the first code.
+         *
+         * @param codes the codes of the characters of the children, ascending
+         * @param count the number of children
+         */
+        int findBase(int[] codes, int count)
+        {
+            int free = head;
+            while (true)
+            {
+                if (free == -1)
+                {
+                    free = base.length;
+                    grow(2 * base.length);
+                }
+
+                int b = free - codes[0];
+                if (b >= 0 && fits(b, codes, count))
+                {
+                    int last = b + codes[count - 1];
+                    if (last >= base.length)
+                    {
+                        grow(Math.max(2 * base.length, last + 1));
+                    }
+                    return b;
+                }
+                int next = nextFree[free];
+                if (++misses[free] == MAX_MISSES)
+                {
+                    // a free slot in a crowded area is left for the other children, keeping the search short
+                    unlink(free);
+                }
+                free = next;
+            }
+        }
+
+        /**
+         * Tells if the slots of the codes after the first one are free from
+         * the specified base, the slots past the end being free.
+         */
+        private boolean fits(int b, int[] codes, int count)
+        {
+            for (int j = 1; j < count; j++)
+            {
+                int slot = b + codes[j];
+                if (slot < check.length && check[slot] != -1)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Takes a free slot for a state with the specified parent.
+         */
+        void take(int slot, int parent)
+        {
+            check[slot] = parent;
+            if (listed[slot])
+            {
+                unlink(slot);
+            }
+        }
+
+        /**
+         * Removes a slot from the list of the free slots.
+         */
+        private void unlink(int slot)
+        {
+            listed[slot] = false;
+            int prev = prevFree[slot];
+            int next = nextFree[slot];
+            if (prev == -1)
+            {
+                head = next;
+            }
+            else
+            {
+                nextFree[prev] = next;
+            }
+            if (next == -1)
+            {
+                tail = prev;
+            }
+            else
+            {
+                prevFree[next] = prev;
+            }
+        }
+
+        /**
+         * Grows the slots to the specified capacity, the new slots being
+         * free and chained after the last free slot.
+         */
+        private void grow(int capacity)
+        {
+            int old = base.length;
+            base = Arrays.copyOf(base, capacity);
+            check = Arrays.copyOf(check, capacity);
+            nextFree = Arrays.copyOf(nextFree, capacity);
+            prevFree = Arrays.copyOf(prevFree, capacity);
+            misses = Arrays.copyOf(misses, capacity);
+            listed = Arrays.copyOf(listed, capacity);
+            Arrays.fill(check, old, capacity, -1);
+            Arrays.fill(listed, old, capacity, true);
+            for (int i = old; i < capacity; i++)
+            {
+                prevFree[i] = i - 1;
+                nextFree[i] = i + 1;
+            }
+            prevFree[old] = tail;
+            nextFree[capacity - 1] = -1;
+            if (tail == -1)
+            {
+                head = old;
+            }
+            else
+            {
+                nextFree[tail] = old;
+            }
+            tail = capacity - 1;
+        }
+    }
+
+    /**
+     * Returns the number of states.
+     */
+    int size()
+    {
+        return states;
+    }
+
+    /**
+     * Returns the state reached from the specified state by the specified
+     * character, or -1 if no name continues with it.
+     */
+    int next(int state, char c)
+    {
+        if (state >= check.length)
+        {
+            // within a tail
+            int p = state - check.length + 1;
+            return p < tailChars.length && tailOf[p] == tailOf[p - 1] && tailChars[p] == c ? state + 1 : -1;
+        }
+
+        int b = base[state];
+        if (b < 0)
+        {
+            // at the start of a tail
+            int p = -1 - b;
+            return tailChars[p] == c ? check.length + p : -1;
+        }
+
+        int code = code(c);
+        if (code == 0)
+        {
+            return -1;
+        }
+
+        int next = b + code;
+        return next < check.length && check[next] == state ? next : -1;
+    }
+
+    /**
+     * Returns the number of the character, or 0 if no name uses it.
+     */
+    private int code(char c)
+    {
+        if (c < ASCII)
+        {
+            return asciiCode[c];
+        }
+
+        int i = Arrays.binarySearch(wideChars, c);
+        return i < 0 ? 0 : wideCode[i];
+    }
+
+    /**
+     * Tells if the position in the tails ends its tail, its prefix being
+     * the whole name of the tail.
+     */
+    private boolean endsTail(int p)
+    {
+        return p + 1 == tailChars.length || tailOf[p + 1] != tailOf[p];
+    }
+
+    /**
+     * Returns the ordinal of the option keyed by the prefix of the state, or -1.
+     */
+    int key(int state)
+    {
+        if (state >= check.length)
+        {
+            int p = state - check.length;
+            return endsTail(p) ? tailKey[tailOf[p]] : -1;
+        }
+        return key[state];
+    }
+
+    /**
+     * Returns the index of the long name equal to the prefix of the state, or -1.
+     */
+    int longName(int state)
+    {
+        if (state >= check.length)
+        {
+            int p = state - check.length;
+            return endsTail(p) ? tailLong[tailOf[p]] : -1;
+        }
+        return longName[state];
+    }
+
+    /**
+     * Returns the ordinal the prefix of the state designates as a partial
+     * long name, {@link CompiledOptions#AMBIGUOUS}, or -1.
+     */
+    int partial(int state)
+    {
+        if (state >= check.length)
+        {
+            return tailPartial[tailOf[state - check.length]];
+        }
+        return partial[state];
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the classifications of the tokens {@link DefaultParser} meets,
+ * for applications parsing command lines made of the same options over and
+ * over (<code>--verbose</code>, <code>--format=json</code>, <code>-Xmx4g</code>).
+ * <p>
+ * Telling what a token starting with a dash is takes several lookups of its
+ * name: long and partial long names, long names prefixing the token, short
+ * names, Java-like properties and negative numbers. A token found in the
+ * cache is resolved with a single hash probe instead. The cache is used by
+ * the parsers it is given to, for the command lines parsed against the
+ * options it was created for; it is ignored for other options.
+ * <p>
+ * The cache is a table of a fixed number of slots, each token having one
+ * slot given by its hash. A token replaces the one cached in its slot, so
+ * the tokens recurring often stay cached while the tokens met once, like
+ * file names given as <code>-Dlog=/tmp/x.log</code>, pass through. The
+ * classifications depend on the option definitions: they are not used
+ * once one of the options has been modified.
+ * <p>
+ * This class is thread-safe: a cache can be shared by parsers used by
+ * several threads.
+ *
+ * @see DefaultParser#DefaultParser(boolean, TokenCache)
+ * @since 1.5
+ */
+public final class TokenCache
+{
+    /** The classification of a token, as cached. */
+    static final class Entry
+    {
+        /** the token */
+        final String text;
+
+        /** the {@link CompiledOptions#definitionVersion() version of the option definitions} the token was classified with */
+        final long version;
+
+        /** whether the token was classified with partial matching of the long options */
+        final boolean partial;
+
+        /** the position of the first '=' in the token, or -1 */
+        final int eq;
+
+        /** the kind of the token, see {@link Token} */
+        final int kind;
+
+        /** the ordinal of the option named by the token, if any */
+        final int ordinal;
+
+        /** the start of the attached value, if any */
+        final int valueStart;
+
+        /** whether the token is taken as a value by an option expecting one */
+        final boolean argument;
+
+        Entry(Token token, long version, boolean partial, boolean argument)
+        {
+            this.text = token.text;
+            this.version = version;
+            this.partial = partial;
+            this.eq = token.eq;
+            this.kind = token.kind;
+            this.ordinal = token.ordinal;
+            this.valueStart = token.valueStart;
+            this.argument = argument;
+        }
+    }
+
+    /** the options the tokens are classified against */
+    final CompiledOptions options;
+
+    /** the slots of the table, the number of slots being a power of two */
+    private final AtomicReferenceArray<Entry> slots;
+
+    /** the number of tokens found in the cache */
+    private final LongAdder hits = new LongAdder();
+
+    /** the number of tokens not found in the cache */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache of the tokens parsed against the specified options.
+     *
+     * @param options the options, compiled when the cache is created
+     * @param maximumSize the maximum number of tokens cached, rounded up to a power of two
+     */
+    public TokenCache(Options options, int maximumSize)
+    {
+        this(options.compile(), maximumSize);
+    }
+
+    /**
+     * Creates a cache of the tokens parsed against the specified options.
+     *
+     * @param options the compiled options
+     * @param maximumSize the maximum number of tokens cached, rounded up to a power of two
+     */
+    public TokenCache(CompiledOptions options, int maximumSize)
+    {
+        if (maximumSize < 1 || maximumSize > 1 << 30)
+        {
+            throw new IllegalArgumentException("The maximum size must be between 1 and 2^30: " + maximumSize);
+        }
+        this.options = options;
+        this.slots = new AtomicReferenceArray<Entry>(maximumSize == 1 ? 1 : Integer.highestOneBit(maximumSize - 1) << 1);
+    }
+
+    /**
+     * Returns the options the tokens are classified against.
+     *
+     * @return the compiled options
+     */
+    public CompiledOptions getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * Returns the slot of the specified token.
+     */
+    private int slot(String token)
+    {
+        int hash = token.hashCode();
+        return (hash ^ hash >>> 16) & (slots.length() - 1);
+    }
+
+    /**
+     * Looks up the classification of a token.
+     *
+     * @param token the token
+     * @param version the version of the option definitions
+     * @param partial whether the long options can be partially matched
+     * @return the classification, or null if the token is not cached
+     */
+    Entry get(String token, long version, boolean partial)
+    {
+        Entry entry = slots.get(slot(token));
+        if (entry != null && entry.version == version && entry.partial == partial && entry.text.equals(token))
+        {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the classification of a token, replacing the token cached in its slot.
+     *
+     * @param entry the classification
+     */
+    void put(Entry entry)
+    {
+        slots.lazySet(slot(entry.text), entry);
+    }
+
+    /**
+     * Returns the number of tokens found in the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of tokens that were not found in the cache and
+     * were classified by the parser.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of the tokens found in the cache.
+     *
+     * @return the hit rate, between 0 and 1, or 0 if no token was looked up yet
+     */
+    public double getHitRate()
+    {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the maximum number of tokens cached.
+     *
+     * @return the number of slots of the cache
+     */
+    public int getMaximumSize()
+    {
+        return slots.length();
+    }
+
+    /**
+     * Removes all the cached tokens. The statistics are kept.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < slots.length(); i++)
+        {
+            slots.set(i, null);
+        }
+    }
+}
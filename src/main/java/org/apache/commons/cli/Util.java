@@ -48,6 +48,29 @@ package org.apache.commons.cli;
         return str;
     }
 
+    /**
+     * Returns the number of hyphens {@link #stripLeadingHyphens(String)}
+     * would remove from the beginning of <code>str[0..end)</code>.
+     *
+     * @param str The string holding the name.
+     * @param end The end of the name in <code>str</code>, exclusive.
+     *
+     * @return 2, 1 or 0.
+     */
+    static int leadingHyphens( String str,  int end)
+    {
+        if (end >= 2 && str.startsWith("--"))
+        {
+            return 2;
+        }
+        else if (end >= 1 && str.charAt(0) == '-')
+        {
+            return 1;
+        }
+
+        return 0;
+    }
+
     /**
      * Remove the leading and trailing quotes from <code>str</code>.
      * E.g. if str is '"one two"', then 'one two' is returned.
@@ -59,12 +82,195 @@ package org.apache.commons.cli;
      */
     static String stripLeadingAndTrailingQuotes(String str)
     {
-         int length = str.length();
-        if (length > 1 && str.startsWith("\"") && str.endsWith("\"") && str.substring(1, length - 1).indexOf('"') == -1)
+        if (isQuoted(str))
         {
-            str = str.substring(1, length - 1);
+            str = str.substring(1, str.length() - 1);
         }
         
         return str;
     }
+
+    /**
+     * Tells if the string is enclosed in quotes that
+     * {@link #stripLeadingAndTrailingQuotes(String)} removes.
+     *
+     * @param str The string to check.
+     * @return true if the first and the last characters are the only quotes of the string
+     */
+    static boolean isQuoted(String str)
+    {
+        int length = str.length();
+        return length > 1 && str.charAt(0) == '"' && str.indexOf('"', 1) == length - 1;
+    }
+
+    /**
+     * Tells if <code>str</code> is a number as accepted by
+     * {@link Double#parseDouble(String)}, without paying for the
+     * NumberFormatException thrown for anything else. The grammar is the
+     * one of {@link Double#valueOf(String)}: leading and trailing
+     * whitespace, an optional sign, then NaN, Infinity, a decimal literal
+     * with an optional exponent or a hexadecimal literal with a binary
+     * exponent, each followed by an optional f, F, d or D suffix.
+     *
+     * @param str The string to check.
+     *
+     * @return true if <code>Double.parseDouble(str)</code> would succeed.
+     */
+    static boolean isNumber( String str)
+    {
+        // skip the whitespace String.trim() would remove
+        int start = 0;
+        int end = str.length();
+        while (start < end && str.charAt(start) <= ' ')
+        {
+            start++;
+        }
+        while (end > start && str.charAt(end - 1) <= ' ')
+        {
+            end--;
+        }
+
+        int i = start;
+        if (i < end && (str.charAt(i) == '-' || str.charAt(i) == '+'))
+        {
+            i++;
+        }
+        if (i == end)
+        {
+            return false;
+        }
+
+        char c = str.charAt(i);
+        if (c == 'N')
+        {
+            return end - i == 3 && str.startsWith("NaN", i);
+        }
+        else if (c == 'I')
+        {
+            return end - i == 8 && str.startsWith("Infinity", i);
+        }
+        else if (c == '0' && i + 1 < end && (str.charAt(i + 1) == 'x' || str.charAt(i + 1) == 'X'))
+        {
+            return isHexNumber(str, i + 2, end);
+        }
+
+        // digits with at most one decimal point, and at least one digit
+        int digits = 0;
+        boolean point = false;
+        for (; i < end; i++)
+        {
+            c = str.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                digits++;
+            }
+            else if (c == '.' && !point)
+            {
+                point = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if (digits == 0)
+        {
+            return false;
+        }
+
+        if (i < end && (str.charAt(i) == 'e' || str.charAt(i) == 'E'))
+        {
+            i = exponentEnd(str, i + 1, end);
+            if (i == -1)
+            {
+                return false;
+            }
+        }
+
+        return isNumberEnd(str, i, end);
+    }
+
+    /**
+     * Tells if <code>str[from..end)</code> is the part of a hexadecimal
+     * floating point literal following "0x": hexadecimal digits with an
+     * optional point, a binary exponent and an optional suffix.
+     */
+    private static boolean isHexNumber( String str,  int from,  int end)
+    {
+        int digits = 0;
+        int fraction = 0;
+        boolean point = false;
+        int i = from;
+        for (; i < end; i++)
+        {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')
+            {
+                if (point)
+                {
+                    fraction++;
+                }
+                else
+                {
+                    digits++;
+                }
+            }
+            else if (c == '.' && !point)
+            {
+                point = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        // either "h", "h." or "h.h", where a digit may only be omitted before the point
+        if (digits == 0 && fraction == 0)
+        {
+            return false;
+        }
+        if (i == end || str.charAt(i) != 'p' && str.charAt(i) != 'P')
+        {
+            return false;
+        }
+
+        i = exponentEnd(str, i + 1, end);
+        return i != -1 && isNumberEnd(str, i, end);
+    }
+
+    /**
+     * Returns the end of the signed decimal exponent starting at
+     * <code>from</code>, or -1 if there is no digit.
+     */
+    private static int exponentEnd( String str,  int from,  int end)
+    {
+        int i = from;
+        if (i < end && (str.charAt(i) == '-' || str.charAt(i) == '+'))
+        {
+            i++;
+        }
+
+        int digits = i;
+        while (i < end && str.charAt(i) >= '0' && str.charAt(i) <= '9')
+        {
+            i++;
+        }
+        return i == digits ? -1 : i;
+    }
+
+    /**
+     * Tells if a number ending at <code>i</code> ends the string, possibly
+     * followed by a single type suffix.
+     */
+    private static boolean isNumberEnd( String str,  int i,  int end)
+    {
+        if (i == end)
+        {
+            return true;
+        }
+
+        char c = str.charAt(i);
+        return i == end - 1 && (c == 'f' || c == 'F' || c == 'd' || c == 'D');
+    }
 }
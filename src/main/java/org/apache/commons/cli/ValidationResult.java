@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+/**
+ * The outcome of {@link DefaultParser#validate(Options, String[])}: whether
+ * the command line is valid, and if not, the kind of {@link ParseException}
+ * parsing it would throw.
+ *
+ * @since 1.5
+ */
+public enum ValidationResult
+{
+    /** The command line is valid. */
+    VALID,
+
+    /** An option is not defined, see {@link UnrecognizedOptionException}. */
+    UNRECOGNIZED_OPTION,
+
+    /** A partial long option matches several options, see {@link AmbiguousOptionException}. */
+    AMBIGUOUS_OPTION,
+
+    /** An option is missing its argument, see {@link MissingArgumentException}. */
+    MISSING_ARGUMENT,
+
+    /** A required option or group is missing, see {@link MissingOptionException}. */
+    MISSING_OPTION,
+
+    /** Several options of the same group are used, see {@link AlreadySelectedException}. */
+    ALREADY_SELECTED,
+
+    /** Any other parse error. */
+    INVALID;
+
+    /**
+     * Tells if the command line is valid.
+     *
+     * @return true for {@link #VALID}
+     */
+    public boolean isValid()
+    {
+        return this == VALID;
+    }
+
+    /**
+     * Returns the result matching the specified exception.
+     *
+     * @param e the exception thrown by a parse
+     * @return the reason of the failure
+     */
+    static ValidationResult of(ParseException e)
+    {
+        // AmbiguousOptionException extends UnrecognizedOptionException and is checked first
+        if (e instanceof AmbiguousOptionException)
+        {
+            return AMBIGUOUS_OPTION;
+        }
+        if (e instanceof UnrecognizedOptionException)
+        {
+            return UNRECOGNIZED_OPTION;
+        }
+        if (e instanceof MissingArgumentException)
+        {
+            return MISSING_ARGUMENT;
+        }
+        if (e instanceof MissingOptionException)
+        {
+            return MISSING_OPTION;
+        }
+        if (e instanceof AlreadySelectedException)
+        {
+            return ALREADY_SELECTED;
+        }
+        return INVALID;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CachingParserTest
+{
+    private static Options options()
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder("f").longOpt("file").hasArg().build());
+        return options;
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception
+    {
+        final Options options = options();
+        final CachingParser parser = new CachingParser(10);
+        final String[] args = { "-v", "--file", "in", "arg" };
+
+        final CommandLine first = parser.parse(options, args);
+        assertTrue(first.hasOption("verbose"));
+        assertEquals("in", first.getOptionValue("f"));
+        assertEquals(Arrays.asList("arg"), first.getArgList());
+
+        // modifying the array passed doesn't change the cached entry
+        args[3] = "other";
+        assertEquals(Arrays.asList("other"), parser.parse(options, args).getArgList());
+        args[3] = "arg";
+        assertSame(first, parser.parse(options, args.clone()));
+        assertNotSame(first, parser.parse(options, args, true));
+
+        assertEquals(1, parser.getHitCount());
+        assertEquals(3, parser.getMissCount());
+        assertEquals(3, parser.size());
+        assertEquals(0.25, parser.getHitRate(), 0);
+
+        parser.clear();
+        assertEquals(0, parser.size());
+        assertNotSame(first, parser.parse(options, args));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception
+    {
+        final Options options = options();
+        final CachingParser parser = new CachingParser(2);
+
+        final CommandLine a = parser.parse(options, new String[] { "a" });
+        final CommandLine b = parser.parse(options, new String[] { "b" });
+        assertSame(a, parser.parse(options, new String[] { "a" }));
+        parser.parse(options, new String[] { "c" });
+
+        assertEquals(2, parser.size());
+        assertEquals(1, parser.getEvictionCount());
+        assertSame(a, parser.parse(options, new String[] { "a" }));
+        assertNotSame(b, parser.parse(options, new String[] { "b" }));
+    }
+
+    @Test
+    public void testCommandLineIsReadOnly() throws Exception
+    {
+        final CommandLine cl = new CachingParser(10).parse(options(), new String[] { "-f", "in", "arg" });
+
+        try
+        {
+            cl.getArgList().add("more");
+            fail("UnsupportedOperationException expected");
+        }
+        catch (final UnsupportedOperationException e)
+        {
+            // expected
+        }
+
+        final Iterator<Option> it = cl.iterator();
+        it.next();
+        try
+        {
+            it.remove();
+            fail("UnsupportedOperationException expected");
+        }
+        catch (final UnsupportedOperationException e)
+        {
+            // expected
+        }
+
+        // the options handed out are copies
+        cl.getOptions()[0].getValuesList().add("changed");
+        cl.iterator().next().getValuesList().add("changed");
+        assertEquals(Arrays.asList("in"), cl.getOptionValues("f"));
+        assertEquals(Arrays.asList("arg"), cl.getArgList());
+    }
+
+    @Test
+    public void testOptionsChanged() throws Exception
+    {
+        final Options options = options();
+        final CachingParser parser = new CachingParser(10);
+        final String[] args = { "-f", "a", "b" };
+
+        assertEquals(Arrays.asList("b"), parser.parse(options, args).getArgList());
+
+        options.getOption("f").setArgs(2);
+        final CommandLine cl = parser.parse(options, args);
+        assertEquals(Arrays.asList("a", "b"), cl.getOptionValues("f"));
+        assertEquals(0, cl.getArgCount());
+
+        options.addOption("b", "flag b");
+        try
+        {
+            parser.parse(options, new String[] { "-b" });
+        }
+        catch (final UnrecognizedOptionException e)
+        {
+            fail("the options added must be recognized");
+        }
+        assertEquals(0, parser.getHitCount());
+    }
+
+    @Test
+    public void testOtherOptionsChanged() throws Exception
+    {
+        final Options options = options();
+        final Options other = options();
+        final CachingParser parser = new CachingParser(10);
+        final String[] args = { "-f", "a", "b" };
+
+        parser.parse(options, args);
+        other.getOption("f").setArgs(2);
+        new OptionGroup().setRequired(true);
+        parser.parse(options, args);
+
+        assertEquals(1, parser.getHitCount());
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws Exception
+    {
+        final CachingParser parser = new CachingParser(10);
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                parser.parse(options(), new String[] { "-x" });
+                fail("UnrecognizedOptionException expected");
+            }
+            catch (final UnrecognizedOptionException e)
+            {
+                assertEquals("-x", e.getOption());
+            }
+        }
+        assertEquals(0, parser.size());
+        assertEquals(2, parser.getMissCount());
+    }
+
+    @Test
+    public void testConcurrentMissesParseOnce() throws Exception
+    {
+        final AtomicInteger parses = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DefaultParser slow = new DefaultParser()
+        {
+            @Override
+            public CommandLine parse(final CompiledOptions options, final String[] arguments, final Properties properties,
+                                     final boolean stopAtNonOption) throws ParseException
+            {
+                parses.incrementAndGet();
+                started.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return super.parse(options, arguments, properties, stopAtNonOption);
+            }
+        };
+
+        final CachingParser parser = new CachingParser(slow, 10);
+        final Options options = options();
+        final String[] args = { "-v", "arg" };
+        final CommandLine[] results = new CommandLine[4];
+        final Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        results[index] = parser.parse(options, args);
+                    }
+                    catch (final ParseException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            threads[i].start();
+            if (i == 0)
+            {
+                started.await();
+            }
+        }
+
+        // let the waiting threads reach the cache before the parse completes
+        while (parser.getHitCount() < threads.length - 1)
+        {
+            Thread.yield();
+        }
+        release.countDown();
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(1, parses.get());
+        assertEquals(1, parser.getMissCount());
+        for (final CommandLine result : results)
+        {
+            assertSame(results[0], result);
+        }
+        assertFalse(results[0].getArgList().isEmpty());
+    }
+}
@@ -18,9 +18,22 @@
 package org.apache.commons.cli;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 
 import org.junit.Test;
@@ -156,4 +169,197 @@ public class CommandLineTest
         assertEquals( "bar", cmd.getArgList().get( 1 ) );
         assertEquals( "T", cmd.getOptions()[0].getOpt() );
     }
+
+    @Test
+    public void testProcessedOptionsHoldTheValuesOfEachOccurrence() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption(Option.builder("f").hasArg().build());
+        options.addOption("v", false, "verbose");
+
+        final CommandLine cl = new DefaultParser().parse(options, new String[] { "-f", "a", "-v", "-f", "b" });
+
+        final Option[] processed = cl.getOptions();
+        assertEquals(3, processed.length);
+        assertEquals("a", processed[0].getValue());
+        assertNull(processed[1].getValue());
+        assertEquals("b", processed[2].getValue());
+        assertNotSame(options.getOption("f"), processed[0]);
+        assertTrue(options.getOption("f").getValuesList().isEmpty());
+
+        // the same copies are returned each time
+        assertSame(processed[0], cl.getOptions()[0]);
+        assertSame(processed[0], cl.iterator().next());
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("a", false, "toggle -a");
+        options.addOption("b", false, "toggle -b");
+
+        final CommandLine cl = new DefaultParser().parse(options, new String[] { "-a", "-b" });
+
+        final Iterator<Option> it = cl.iterator();
+        assertEquals("a", it.next().getOpt());
+        it.remove();
+
+        assertFalse(cl.hasOption("a"));
+        assertTrue(cl.hasOption("b"));
+        assertEquals(1, cl.getOptions().length);
+    }
+
+    @Test
+    public void testLookupWhenNameIsShared() throws Exception
+    {
+        // "b" is the short name of the first option and the long name of the second
+        final Option first = Option.builder("b").hasArgs().valueSeparator().build();
+        final Option second = Option.builder("a").longOpt("b").hasArgs().valueSeparator().build();
+        first.addValueForProcessing("k1=v1");
+        second.addValueForProcessing("k2=v2");
+
+        final CommandLine cmd = new CommandLine.Builder().addOption(first).addOption(second).build();
+
+        assertEquals("k1", cmd.getOptionValue("b"));
+        assertEquals("k2", cmd.getOptionValue("a"));
+        assertEquals(2, cmd.getOptionProperties("b").size());
+        assertEquals(1, cmd.getOptionProperties(second).size());
+        assertTrue(cmd.hasOption(Option.builder("a").longOpt("b").build()));
+        assertFalse(cmd.hasOption(Option.builder("a").build()));
+    }
+
+    @Test
+    public void testLookupWhileOptionsAreAdded() throws Exception
+    {
+        final CommandLine.Builder builder = new CommandLine.Builder();
+        final CommandLine cmd = builder.build();
+
+        for (int i = 0; i < 100; i++)
+        {
+            final Option option = Option.builder("o" + i).hasArg().build();
+            option.addValueForProcessing("v" + i);
+            builder.addOption(option);
+
+            assertTrue(cmd.hasOption("o" + i));
+            assertEquals("v" + i, cmd.getOptionValue("-o" + i));
+            assertFalse(cmd.hasOption("o" + (i + 1)));
+        }
+    }
+
+    @Test
+    public void testRepeatedOptionValues() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption(Option.builder("I").hasArg().build());
+        options.addOption(Option.builder("D").numberOfArgs(2).valueSeparator().build());
+
+        final CommandLine cl = new DefaultParser().parse(options,
+                new String[] { "-I", "a", "-Dk1=v1", "-I", "b", "-Dk2", "-I", "c" });
+
+        assertEquals(Arrays.asList("a", "b", "c"), cl.getOptionValues("I"));
+        assertEquals("a", cl.getOptionValue('I'));
+        assertEquals(Arrays.asList("k1", "v1", "k2"), cl.getOptionValues("D"));
+        assertEquals("v1", cl.getOptionProperties("D").getProperty("k1"));
+        assertEquals("true", cl.getOptionProperties("D").getProperty("k2"));
+        assertEquals(Arrays.asList("b"), cl.getOptions()[2].getValuesList());
+
+        // the values of a removed occurrence are no longer returned
+        final Iterator<Option> it = cl.iterator();
+        it.next();
+        it.remove();
+
+        assertEquals(Arrays.asList("b", "c"), cl.getOptionValues("I"));
+        assertEquals("b", cl.getOptionValue('I'));
+    }
+
+    @Test
+    public void testArgs() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose");
+
+        final String[] args = new String[20];
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i] = "file" + i;
+        }
+        final CommandLine cl = new DefaultParser().parse(options, args);
+
+        assertEquals(20, cl.getArgCount());
+        for (int i = 0; i < args.length; i++)
+        {
+            assertEquals(args[i], cl.getArg(i));
+        }
+        assertEquals(Arrays.asList(args), cl.getArgList());
+        assertEquals(Arrays.asList(args), cl.getArgListView());
+        assertEquals(Arrays.asList(args), Arrays.asList(cl.getArgs()));
+
+        try
+        {
+            cl.getArg(20);
+            fail("IndexOutOfBoundsException expected");
+        }
+        catch (final IndexOutOfBoundsException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            cl.getArgListView().clear();
+            fail("UnsupportedOperationException expected");
+        }
+        catch (final UnsupportedOperationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testArgListIsLive() throws Exception
+    {
+        final CommandLine cl = new DefaultParser().parse(new Options(), new String[] { "a", "b", "c" });
+
+        final List<String> view = cl.getArgListView();
+        cl.getArgList().remove(1);
+        cl.getArgList().add(0, "z");
+        cl.getArgList().set(2, "y");
+        cl.getArgList().add("x");
+
+        assertEquals(Arrays.asList("z", "a", "y", "x"), view);
+        assertEquals(4, cl.getArgCount());
+        assertEquals("x", cl.getArg(3));
+        assertEquals(Arrays.asList("z", "a", "y", "x"), Arrays.asList(cl.getArgs()));
+
+        cl.getArgList().clear();
+        assertEquals(0, cl.getArgCount());
+        assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "toggle -a");
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        options.addOption(Option.builder("f").longOpt("file").hasArg().build());
+
+        final CommandLine cmd = new DefaultParser().parse(options, new String[] { "-a", "-Dk=v", "--file", "x", "arg" });
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(cmd);
+        out.close();
+        final CommandLine copy = (CommandLine) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .readObject();
+
+        assertTrue(copy.hasOption("all"));
+        assertEquals("x", copy.getOptionValue('f'));
+        assertEquals("v", copy.getOptionProperties("D").getProperty("k"));
+        assertEquals(Arrays.asList("arg"), copy.getArgList());
+
+        // the serialized form differs from the one of 1.4
+        assertEquals(2L, ObjectStreamClass.lookup(CommandLine.class).getSerialVersionUID());
+    }
 }
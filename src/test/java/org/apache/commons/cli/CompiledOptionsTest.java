@@ -0,0 +1,358 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CompiledOptionsTest
+{
+    @Test
+    public void testLookup()
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "toggle -a");
+        options.addOption(Option.builder().longOpt("verbose").build());
+
+        final CompiledOptions compiled = options.compile();
+
+        assertSame(options.getOption("a"), compiled.getOption("a"));
+        assertSame(options.getOption("all"), compiled.getOption("--all"));
+        assertSame(options.getOption("verbose"), compiled.getOption("-verbose"));
+        assertNull(compiled.getOption("b"));
+
+        assertTrue(compiled.hasShortOption("a"));
+        assertTrue(compiled.hasShortOption("verbose"));
+        assertFalse(compiled.hasShortOption("all"));
+        assertTrue(compiled.hasLongOption("all"));
+        assertFalse(compiled.hasLongOption("a"));
+        assertEquals(2, compiled.getOptions().size());
+    }
+
+    @Test
+    public void testRangeLookup()
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "toggle -a");
+        options.addOption(Option.builder("ab").build());
+
+        final CompiledOptions compiled = options.compile();
+        final String token = "--all=abc";
+
+        assertEquals(compiled.keyOrdinal("ab"), compiled.keyOrdinal(token, 6, 8));
+        assertEquals(compiled.keyOrdinal("a"), compiled.keyOrdinal(token, 6, 7));
+        assertEquals(-1, compiled.keyOrdinal(token, 6, 9));
+        assertEquals(compiled.keyOrdinal("a"), compiled.resolve(token, 2, 5));
+        assertEquals(-1, compiled.resolve(token, 2, 4));
+    }
+
+    @Test
+    public void testLargeOptionSet()
+    {
+        final Options options = new Options();
+        for (int i = 0; i < 3000; i++)
+        {
+            options.addOption(Option.builder("s" + i).longOpt("service-" + i + "-endpoint").build());
+            options.addOption(Option.builder().longOpt("s" + (i + 3000)).build());
+        }
+        // a long name equal to the key of another option
+        options.addOption(Option.builder("x").longOpt("s1").build());
+
+        final CompiledOptions compiled = options.compile();
+
+        for (int i = 0; i < 6000; i++)
+        {
+            assertSame(options.getOption("s" + i), compiled.getOption("s" + i));
+            assertTrue(compiled.hasShortOption("s" + i));
+            assertEquals(i >= 3000 || i == 1, compiled.hasLongOption("s" + i));
+        }
+        for (int i = 0; i < 3000; i++)
+        {
+            final String name = "service-" + i + "-endpoint";
+            assertSame(options.getOption("s" + i), compiled.getOption("--" + name));
+            assertTrue(compiled.hasLongOption(name));
+            assertFalse(compiled.hasShortOption(name));
+        }
+        assertNull(compiled.getOption("s6000"));
+        assertNull(compiled.getOption("service-"));
+        assertFalse(compiled.hasLongOption("service-0"));
+    }
+
+    @Test
+    public void testNamesWithSameHashCode()
+    {
+        final Options options = new Options();
+        options.addOption(Option.builder("Aa").longOpt("BB").build());
+        options.addOption(Option.builder("BB").build());
+
+        final CompiledOptions compiled = options.compile();
+
+        assertSame(options.getOption("BB"), compiled.getOption("--BB"));
+        assertSame(options.getOption("Aa"), compiled.getOption("-Aa"));
+        assertTrue(compiled.hasLongOption("BB"));
+        assertFalse(compiled.hasLongOption("Aa"));
+        assertNull(compiled.getOption("Ab"));
+    }
+
+    @Test
+    public void testPerfectHashBuiltByLookups()
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "toggle -a");
+        options.addOption(Option.builder().longOpt("verbose").build());
+
+        final CompiledOptions compiled = options.compile();
+        assertNull(compiled.nameIndex());
+
+        for (int i = 0; i <= CompiledOptions.INDEX_AFTER; i++)
+        {
+            assertSame(options.getOption("a"), compiled.getOption("--all"));
+        }
+        assertNotNull(compiled.nameIndex());
+        assertSame(options.getOption("verbose"), compiled.getOption("verbose"));
+        assertTrue(compiled.hasShortOption("a"));
+        assertTrue(compiled.hasLongOption("all"));
+        assertFalse(compiled.hasLongOption("a"));
+        assertNull(compiled.getOption("b"));
+    }
+
+    @Test
+    public void testNamesWithSameHashCodeAfterManyLookups()
+    {
+        final Options options = new Options();
+        options.addOption(Option.builder("Aa").build());
+        options.addOption(Option.builder("BB").build());
+
+        final CompiledOptions compiled = options.compile();
+        for (int i = 0; i <= 2 * CompiledOptions.INDEX_AFTER; i++)
+        {
+            assertSame(options.getOption("Aa"), compiled.getOption("Aa"));
+            assertSame(options.getOption("BB"), compiled.getOption("-BB"));
+        }
+        assertNull(compiled.nameIndex());
+    }
+
+    @Test
+    public void testShortNameTakesPrecedence()
+    {
+        final Options options = new Options();
+        options.addOption("a", "b", false, "first");
+        options.addOption("c", "a", false, "second");
+
+        assertEquals("first", options.compile().getOption("a").getDescription());
+        assertEquals(options.getOption("a"), options.compile().getOption("a"));
+    }
+
+    @Test
+    public void testMatchingOptions()
+    {
+        final Options options = new Options();
+        options.addOption(Option.builder().longOpt("version").build());
+        options.addOption(Option.builder().longOpt("verbose").build());
+
+        final CompiledOptions compiled = options.compile();
+
+        assertEquals(options.getMatchingOptions("ver"), compiled.getMatchingOptions("ver"));
+        assertEquals(options.getMatchingOptions("--version"), compiled.getMatchingOptions("--version"));
+        assertTrue(compiled.getMatchingOptions("foo").isEmpty());
+    }
+
+    @Test
+    public void testMatchingOptionsInAdditionOrder()
+    {
+        final Options options = new Options();
+        for (final String name : new String[] { "verbose", "help", "version", "ver" })
+        {
+            options.addOption(Option.builder().longOpt(name).build());
+        }
+
+        final CompiledOptions compiled = options.compile();
+
+        assertEquals("[ver]", compiled.getMatchingOptions("ver").toString());
+        assertEquals("[verbose, version, ver]", compiled.getMatchingOptions("ve").toString());
+        assertEquals("[verbose, help, version, ver]", compiled.getMatchingOptions("--").toString());
+    }
+
+    @Test
+    public void testLongestLongPrefix()
+    {
+        final Options options = new Options();
+        for (final String name : new String[] { "X", "Xm", "Xmx", "Xmxs", "Xss" })
+        {
+            options.addOption(Option.builder().longOpt(name).build());
+        }
+
+        final CompiledOptions compiled = options.compile();
+        for (int pass = 0; pass < 2; pass++)
+        {
+            assertEquals("Xmx", compiled.longName(compiled.longestLongPrefix("-Xmx512m", 1, 8, 2, 5)));
+            assertEquals("Xmxs", compiled.longName(compiled.longestLongPrefix("-Xmxs512m", 1, 9, 2, 6)));
+            assertEquals("Xm", compiled.longName(compiled.longestLongPrefix("-Xmxs", 1, 5, 2, 2)));
+            assertEquals(-1, compiled.longestLongPrefix("-Xmxs", 1, 5, 2, 1));
+            assertEquals("Xss", compiled.longName(compiled.longestLongPrefix("-Xss1m", 1, 6, 2, 3)));
+            assertEquals(-1, compiled.longestLongPrefix("-Xa", 1, 3, 2, 2));
+            assertEquals("X", compiled.longName(compiled.longestLongPrefix("Xa", 0, 2, 1, 1)));
+            TokenAutomatonTest.withAutomaton(compiled);
+        }
+    }
+
+    @Test
+    public void testMatchLong()
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder().longOpt("version").build());
+        options.addOption(Option.builder().longOpt("help").build());
+
+        final CompiledOptions compiled = options.compile();
+        for (int pass = 0; pass < 2; pass++)
+        {
+            assertEquals(CompiledOptions.AMBIGUOUS, compiled.matchLong("--ver", 2, 5, true));
+            assertEquals(-1, compiled.matchLong("--ver", 2, 5, false));
+            assertEquals(compiled.keyOrdinal("version"), compiled.matchLong("--vers=1", 2, 6, true));
+            assertEquals(compiled.keyOrdinal("v"), compiled.matchLong("--verbose", 2, 9, false));
+            assertEquals(-1, compiled.matchLong("--x", 2, 3, true));
+            assertEquals(CompiledOptions.AMBIGUOUS, compiled.matchLong("--", 2, 2, true));
+            TokenAutomatonTest.withAutomaton(compiled);
+        }
+    }
+
+    @Test
+    public void testGroupsAndRequired()
+    {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("x", "x"));
+        group.addOption(new Option("y", "y"));
+        group.setRequired(true);
+
+        final Options options = new Options();
+        options.addRequiredOption("r", null, false, "required");
+        options.addOptionGroup(group);
+        options.addOption("z", "not grouped");
+
+        final CompiledOptions compiled = options.compile();
+
+        assertEquals(1, compiled.getOptionGroups().size());
+        assertSame(group, compiled.getOptionGroup(options.getOption("y")));
+        assertNull(compiled.getOptionGroup(options.getOption("z")));
+        assertEquals(options.getRequiredOptions(), compiled.getRequiredOptions());
+    }
+
+    @Test
+    public void testCompileIsCachedUntilModified()
+    {
+        final Options options = new Options();
+        options.addOption("a", "toggle -a");
+
+        final CompiledOptions compiled = options.compile();
+        assertSame(compiled, options.compile());
+
+        options.addOption("b", "toggle -b");
+
+        assertNotSame(compiled, options.compile());
+        assertFalse(compiled.hasOption("b"));
+        assertTrue(options.compile().hasOption("b"));
+    }
+
+    @Test
+    public void testSingleCharacterTable()
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "ASCII");
+        options.addOption("\u00e9", false, "non-ASCII");
+        options.addOption(Option.builder().longOpt("z").build());
+
+        final CompiledOptions compiled = options.compile();
+
+        assertEquals("a", compiled.option(compiled.shortOrdinal('a')).getOpt());
+        assertEquals("\u00e9", compiled.option(compiled.shortOrdinal('\u00e9')).getOpt());
+        assertEquals("z", compiled.option(compiled.shortOrdinal('z')).getLongOpt());
+        assertEquals(-1, compiled.shortOrdinal('b'));
+        assertEquals(-1, compiled.shortOrdinal('\u00e8'));
+        assertEquals(-1, compiled.shortOrdinal('-'));
+        assertEquals(compiled.shortOrdinal('a'), compiled.resolve('a'));
+    }
+
+    @Test
+    public void testClusterWithNonAsciiOption() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("a", false, "ASCII");
+        options.addOption(Option.builder("\u00e9").hasArg().build());
+
+        final CommandLine cl = new DefaultParser().parse(options.compile(), new String[] { "-a\u00e9value" });
+
+        assertTrue(cl.hasOption('a'));
+        assertEquals("value", cl.getOptionValue('\u00e9'));
+    }
+
+    @Test
+    public void testParseCompiled() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "toggle -a");
+        options.addOption("f", "file", true, "file");
+
+        final CommandLine cl = new DefaultParser().parse(options.compile(), new String[] { "-a", "--file", "x", "y" });
+
+        assertTrue(cl.hasOption("all"));
+        assertEquals("x", cl.getOptionValue("f"));
+        assertEquals(1, cl.getArgs().length);
+    }
+
+    @Test
+    public void testDefinitionVersion()
+    {
+        final Option shared = Option.builder("f").hasArg().build();
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("x", "x"));
+
+        final Options options = new Options();
+        options.addOption(shared);
+        options.addOptionGroup(group);
+        final Options other = new Options();
+        other.addOption("a", false, "toggle -a");
+        other.addOption(shared);
+        final Options unrelated = new Options();
+        unrelated.addOption("b", false, "toggle -b");
+
+        final CompiledOptions compiled = options.compile();
+        final CompiledOptions otherCompiled = other.compile();
+        final long version = compiled.definitionVersion();
+        final long otherVersion = otherCompiled.definitionVersion();
+
+        unrelated.compile();
+        unrelated.getOption("b").setArgs(1);
+        assertEquals(version, compiled.definitionVersion());
+
+        shared.setArgs(2);
+        assertTrue(version != compiled.definitionVersion());
+        assertTrue(otherVersion != otherCompiled.definitionVersion());
+
+        final long changed = compiled.definitionVersion();
+        group.setRequired(true);
+        assertTrue(changed != compiled.definitionVersion());
+    }
+}
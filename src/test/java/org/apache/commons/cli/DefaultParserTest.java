@@ -17,7 +17,21 @@
 
 package org.apache.commons.cli;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
+import org.junit.Test;
 
 public class DefaultParserTest extends ParserTestCase {
 
@@ -26,4 +40,295 @@ public class DefaultParserTest extends ParserTestCase {
         super.setUp();
         parser = new DefaultParser();
     }
+
+    @Test
+    public void testSharedParserAcrossThreads() throws Exception {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder("f").longOpt("file").hasArg().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int id = t;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 2000; i++) {
+                            final String file = "file-" + id + "-" + i;
+                            final String[] args = id % 2 == 0
+                                    ? new String[] { "-v", "--file", file, "-Dk=" + id, "arg" }
+                                    : new String[] { "--file=" + file, "arg", "x" };
+
+                            final CommandLine cl = parser.parse(options, args);
+
+                            assertEquals(file, cl.getOptionValue("f"));
+                            assertEquals(id % 2 == 0, cl.hasOption("v"));
+                            assertEquals(id % 2 == 0 ? 1 : 2, cl.getArgs().length);
+                            if (id % 2 == 0) {
+                                assertEquals(String.valueOf(id), cl.getOptionProperties("D").getProperty("k"));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPassThroughAfterDoubleDash() throws Exception {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder("f").hasArg().build());
+
+        final String[] args = new String[1000];
+        args[0] = "-v";
+        args[1] = "--";
+        for (int i = 2; i < args.length; i++) {
+            args[i] = i % 3 == 0 ? "-v" : i % 3 == 1 ? "--" : "arg" + i;
+        }
+
+        final CommandLine cl = parser.parse(options, args);
+
+        assertTrue(cl.hasOption("v"));
+        assertEquals(1, cl.getOptions().length);
+        assertEquals(Arrays.asList(args).subList(2, args.length), cl.getArgList());
+
+        try {
+            parser.parse(options, new String[] { "-f", "--", "x" });
+            fail("MissingArgumentException expected");
+        } catch (final MissingArgumentException e) {
+            assertEquals("f", e.getOption().getOpt());
+        }
+    }
+
+    @Test
+    public void testPassThroughAfterNonOption() throws Exception {
+        final Options options = new Options();
+        options.addOption("a", false, "toggle -a");
+        options.addOption("b", false, "toggle -b");
+
+        final CommandLine cl = parser.parse(options, new String[] { "-a", "-bz", "-a", "--", "x", "-b" }, true);
+
+        assertTrue(cl.hasOption("a"));
+        assertTrue(cl.hasOption("b"));
+        assertEquals(2, cl.getOptions().length);
+        assertEquals(Arrays.asList("z", "-a", "--", "x", "-b"), cl.getArgList());
+    }
+
+    @Test
+    public void testUnlimitedValues() throws Exception {
+        final Options options = new Options();
+        options.addOption(Option.builder("i").longOpt("inputs").hasArgs().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        options.addOption("v", "verbose", false, "verbose");
+
+        final CommandLine cl = parser.parse(options, new String[] {
+            "--inputs", "a", "\"b\"", "-", "-1", "c", "-v", "x", "-D", "k=v", "l=m", "-i", "d" });
+
+        assertEquals(Arrays.asList("a", "b", "-", "-1", "c", "d"), cl.getOptionValues("i"));
+        assertEquals(Arrays.asList("k", "v", "l", "m"), cl.getOptionValues("D"));
+
+        try {
+            parser.parse(options, new String[] { "-i", "--", "a" });
+            fail("MissingArgumentException expected");
+        } catch (final MissingArgumentException e) {
+            assertEquals("i", e.getOption().getOpt());
+        }
+        assertEquals(Arrays.asList("x"), cl.getArgList());
+        assertTrue(cl.hasOption("v"));
+    }
+
+    @Test
+    public void testMissingOptionsInDeclarationOrder() throws Exception {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("x", "x"));
+        group.addOption(new Option("y", "y"));
+        group.setRequired(true);
+
+        final Options options = new Options();
+        final List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            options.addRequiredOption("o" + i, null, false, "required");
+            if (i % 2 == 1) {
+                expected.add("o" + i);
+            }
+        }
+        options.addOptionGroup(group);
+        options.addOptionGroup(group);
+        expected.add(group);
+
+        final List<String> args = new ArrayList<>();
+        for (int i = 0; i < 70; i += 2) {
+            args.add("-o" + i);
+        }
+        args.add("-x");
+
+        try {
+            parser.parse(options, args.toArray(new String[0]));
+            fail("MissingOptionException expected");
+        } catch (final MissingOptionException e) {
+            assertEquals(expected, e.getMissingOptions());
+        }
+
+        // each occurrence of an option of the group satisfies the group once
+        args.add("-x");
+        for (int i = 1; i < 70; i += 2) {
+            args.add("-o" + i);
+        }
+        assertTrue(parser.parse(options, args.toArray(new String[0])).hasOption("x"));
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("x", "x"));
+        group.addOption(new Option("y", "y"));
+
+        final Options options = new Options();
+        options.addRequiredOption("f", "file", true, "file");
+        options.addOption(Option.builder("D").numberOfArgs(2).valueSeparator().build());
+        options.addOption(Option.builder().longOpt("verbose").build());
+        options.addOption(Option.builder().longOpt("version").build());
+        options.addOptionGroup(group);
+
+        final DefaultParser parser = new DefaultParser();
+        assertEquals(ValidationResult.VALID, parser.validate(options, new String[] { "-f", "in", "-Dk=v", "-x", "arg" }));
+        assertTrue(parser.validate(options, new String[] { "--file=in", "-D", "k=v" }).isValid());
+        assertEquals(ValidationResult.UNRECOGNIZED_OPTION, parser.validate(options, new String[] { "-f", "in", "-z" }));
+        assertEquals(ValidationResult.AMBIGUOUS_OPTION, parser.validate(options, new String[] { "-f", "in", "--ver" }));
+        assertEquals(ValidationResult.MISSING_ARGUMENT, parser.validate(options, new String[] { "-f" }));
+        assertEquals(ValidationResult.MISSING_OPTION, parser.validate(options, new String[] { "-x" }));
+        assertEquals(ValidationResult.ALREADY_SELECTED, parser.validate(options, new String[] { "-f", "in", "-x", "-y" }));
+        assertEquals(ValidationResult.VALID, parser.validate(options.compile(), new String[] { "-f", "in", "-z" }, true));
+
+        // a context validates with its own storage, its command line is left as it was
+        final ParseContext context = new ParseContext(options);
+        parser.parse(context, new String[] { "-f", "in", "arg" });
+        assertEquals(ValidationResult.MISSING_OPTION, parser.validate(context, new String[] { "-x" }, false));
+        assertEquals(ValidationResult.VALID, parser.validate(context, new String[] { "-f", "in", "-y" }, false));
+        assertEquals("in", context.getCommandLine().getOptionValue("f"));
+        assertEquals(1, context.getCommandLine().getArgCount());
+
+        // nothing is recorded, a parse of the same options is unaffected
+        assertEquals(0, parser.parse(options, new String[] { "-f", "in" }).getArgCount());
+    }
+
+    @Test
+    public void testValidateDoesNotAllocate() throws Exception {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addRequiredOption("f", "file", true, "file");
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        final String[] args = { "-v", "--file=in.txt", "-Dkey=value", "\"quoted\"", "--verbose", "arg" };
+        final DefaultParser parser = new DefaultParser();
+        final ParseContext context = new ParseContext(options);
+        assertTrue(parser.validate(context, args, false).isValid());
+
+        assertEquals("bytes allocated by 1000 validations", 0, ParseContextTest.steadyStateAllocation(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return parser.validate(context, args, false);
+            }
+        }));
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        final Options options = new Options();
+        options.addRequiredOption("f", "file", true, "file");
+        options.addOption(Option.builder("t").longOpt("tenant").hasArg().build());
+        options.addOption(Option.builder("q").longOpt("queue").hasArg().type(Number.class).build());
+        options.addOption(Option.builder("n").longOpt("names").hasArgs().build());
+        options.addOption("a", false, "toggle -a");
+        options.addOption("b", false, "toggle -b");
+
+        final DefaultParser parser = new DefaultParser();
+        final CommandLine cl = parser.extract(options,
+                new String[] { "-ab", "--tenant=acme", "-n", "x", "y", "-q42", "-t", "other", "-z", "arg" }, "tenant", "q");
+
+        assertEquals("acme", cl.getOptionValue("tenant"));
+        assertEquals(Arrays.asList("acme"), cl.getOptionValues("t"));
+        assertEquals(42L, cl.getParsedOptionValue("queue"));
+        assertEquals(2, cl.getOptions().length);
+        assertEquals(0, cl.getArgCount());
+
+        // the values of the last target are complete before the reading stops
+        assertEquals(Arrays.asList("x", "y"),
+                parser.extract(options, new String[] { "-n", "x", "y", "-a", "-z" }, "names").getOptionValues("n"));
+
+        // a target missing from the command line, or behind "--", is not found
+        assertTrue(parser.extract(options, new String[] { "-a", "--", "-t", "x" }, "t").getOptions().length == 0);
+
+        // the tokens read before the targets are found follow the usual rules
+        try {
+            parser.extract(options, new String[] { "-z", "-t", "x" }, "t");
+            fail("UnrecognizedOptionException expected");
+        } catch (final UnrecognizedOptionException e) {
+            assertEquals("-z", e.getOption());
+        }
+
+        try {
+            parser.extract(options, new String[] { "-t" }, "t", "queue");
+            fail("MissingArgumentException expected");
+        } catch (final MissingArgumentException e) {
+            assertEquals("t", e.getOption().getOpt());
+        }
+
+        try {
+            parser.extract(options, new String[0], "unknown");
+            fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSharedGroupsAcrossThreads() throws Exception {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("a", "first"));
+        group.addOption(new Option("b", "second"));
+        group.setRequired(true);
+
+        final Options options = new Options();
+        options.addOptionGroup(group);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final String opt = t % 2 == 0 ? "-a" : "-b";
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 2000; i++) {
+                            assertTrue(parser.parse(options, new String[] { opt }).hasOption(opt));
+                            try {
+                                parser.parse(options, new String[] { "-a", "-b" });
+                                fail("AlreadySelectedException expected");
+                            } catch (final AlreadySelectedException e) {
+                                assertEquals("a", e.getOptionGroup().getSelected());
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertNull(group.getSelected());
+    }
 }
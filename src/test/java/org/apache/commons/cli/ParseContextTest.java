@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+public class ParseContextTest
+{
+    private static Options options()
+    {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("x", "x"));
+        group.addOption(new Option("y", "y"));
+
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addRequiredOption("f", "file", true, "input file");
+        options.addOption(Option.builder("o").longOpt("output").hasArg().build());
+        options.addOption(Option.builder("I").hasArg().build());
+        options.addOption(Option.builder("n").longOpt("names").hasArgs().build());
+        options.addOptionGroup(group);
+        return options;
+    }
+
+    @Test
+    public void testReuse() throws Exception
+    {
+        final DefaultParser parser = new DefaultParser();
+        final ParseContext context = new ParseContext(options());
+
+        CommandLine cl = parser.parse(context, new String[] { "-v", "--file", "in", "-I", "a", "-I", "b", "-x", "arg" });
+        assertSame(context.getCommandLine(), cl);
+        assertTrue(cl.hasOption("verbose"));
+        assertEquals("in", cl.getOptionValue("f"));
+        assertEquals(Arrays.asList("a", "b"), cl.getOptionValues("I"));
+        assertEquals(Arrays.asList("arg"), cl.getArgList());
+
+        cl = parser.parse(context, new String[] { "-y", "-I", "c", "-f", "other", "--names", "p", "q" });
+        assertSame(context.getCommandLine(), cl);
+        assertFalse(cl.hasOption("verbose"));
+        assertFalse(cl.hasOption("x"));
+        assertEquals("other", cl.getOptionValue("f"));
+        assertEquals(Arrays.asList("c"), cl.getOptionValues("I"));
+        assertEquals(Arrays.asList("p", "q"), cl.getOptionValues("n"));
+        assertEquals(0, cl.getArgCount());
+        assertEquals(4, cl.getOptions().length);
+
+        context.reset();
+        assertEquals(0, cl.getOptions().length);
+        assertFalse(cl.hasOption("f"));
+    }
+
+    @Test
+    public void testReuseAfterError() throws Exception
+    {
+        final DefaultParser parser = new DefaultParser();
+        final ParseContext context = new ParseContext(options());
+
+        try
+        {
+            parser.parse(context, new String[] { "-x", "-y" });
+            fail("AlreadySelectedException expected");
+        }
+        catch (final AlreadySelectedException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            parser.parse(context, new String[] { "-v" });
+            fail("MissingOptionException expected");
+        }
+        catch (final MissingOptionException e)
+        {
+            assertEquals(Arrays.asList("f"), e.getMissingOptions());
+        }
+
+        final CommandLine cl = parser.parse(context, new String[] { "-y", "-f", "in" });
+        assertTrue(cl.hasOption("y"));
+        assertEquals(2, cl.getOptions().length);
+    }
+
+    @Test
+    public void testSteadyStateParseDoesNotAllocate() throws Exception
+    {
+        final DefaultParser parser = new DefaultParser();
+        final ParseContext context = new ParseContext(options());
+        final String[] args = { "-v", "--file", "in.txt", "-o", "out.txt", "-I", "a", "-I", "b", "-x",
+                                "--names", "p", "q", "-r", "-", "--", "arg" };
+
+        assertEquals("bytes allocated by 1000 parses", 0, steadyStateAllocation(new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                return parser.parse(context, args);
+            }
+        }));
+        assertEquals(Arrays.asList("p", "q", "-r", "-"), context.getCommandLine().getOptionValues("names"));
+    }
+
+    /**
+     * Returns the number of bytes allocated by 1000 calls of the task once
+     * it is warmed up. The least of several measures is kept, as the JVM
+     * may allocate a few bytes on the thread while compiling the task; a
+     * task allocating on every call allocates in every measure. The test
+     * is skipped on JVMs that don't count the allocations.
+     */
+    static long steadyStateAllocation(final Callable<?> task) throws Exception
+    {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+
+        final com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        counter.setThreadAllocatedMemoryEnabled(true);
+        final long thread = Thread.currentThread().getId();
+
+        // warm up, the first calls also size the storage reused by the next ones
+        for (int i = 0; i < 20000; i++)
+        {
+            task.call();
+        }
+
+        // the cost of reading the counter, some JVMs allocate for it
+        long before = counter.getThreadAllocatedBytes(thread);
+        final long overhead = counter.getThreadAllocatedBytes(thread) - before;
+
+        long allocated = Long.MAX_VALUE;
+        for (int measure = 0; measure < 10 && allocated > 0; measure++)
+        {
+            before = counter.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 1000; i++)
+            {
+                task.call();
+            }
+            allocated = Math.min(allocated, counter.getThreadAllocatedBytes(thread) - before - overhead);
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ParsePlanCacheTest
+{
+    private static Options options()
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder("u").longOpt("user").hasArg().build());
+        options.addOption(Option.builder("j").longOpt("job").hasArg().build());
+        options.addOption(Option.builder("p").longOpt("priority").hasArg().build());
+        options.addOption(Option.builder("i").longOpt("inputs").hasArgs().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        return options;
+    }
+
+    private static String describe(final CommandLine cl)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (final Option option : cl.getOptions())
+        {
+            buf.append(option.getKey()).append(option.getValuesList()).append(' ');
+        }
+        return buf.append(cl.getArgList()).toString();
+    }
+
+    @Test
+    public void testSameShape() throws Exception
+    {
+        final Options options = options();
+        final ParsePlanCache plans = new ParsePlanCache(options, 16);
+        final DefaultParser parser = new DefaultParser();
+
+        CommandLine cl = parser.parse(plans, new String[] { "--user", "alice", "--job", "build", "--priority", "1" });
+        assertEquals("alice", cl.getOptionValue("user"));
+        assertEquals(0, plans.getHitCount());
+        assertEquals(1, plans.getMissCount());
+
+        cl = parser.parse(plans, new String[] { "--user", "bob", "--job", "test", "--priority", "\"9\"" });
+        assertEquals(1, plans.getHitCount());
+        assertEquals("bob", cl.getOptionValue("u"));
+        assertEquals("test", cl.getOptionValue("j"));
+        assertEquals("9", cl.getOptionValue("p"));
+        assertEquals(0, cl.getArgCount());
+    }
+
+    @Test
+    public void testSameResultsAsWithoutPlan() throws Exception
+    {
+        final Options options = options();
+        final ParsePlanCache plans = new ParsePlanCache(options, 16);
+        final DefaultParser parser = new DefaultParser();
+
+        final String[][] commandLines = {
+            { "--user=alice", "-vjbuild", "file", "--", "-v", "x" },
+            { "--user=bob", "-vjtest", "other", "--", "-u" },
+            { "--user=carol", "-vjtest", "more", "--" },
+            { "-i", "a", "b", "c", "-v", "d" },
+            { "-i", "e", "f", "g", "-v", "h" },
+            { "-D", "k=v", "-Dx=y", "z" },
+            { "-D", "k", "-Dx=y", "z" },
+        };
+        for (final String[] args : commandLines)
+        {
+            assertEquals(Arrays.toString(args), describe(parser.parse(options, args)),
+                    describe(parser.parse(plans, args)));
+        }
+        assertEquals(2, plans.getHitCount());
+    }
+
+    @Test
+    public void testStopAtNonOption() throws Exception
+    {
+        final Options options = options();
+        final ParsePlanCache plans = new ParsePlanCache(options, 16);
+        final DefaultParser parser = new DefaultParser();
+
+        parser.parse(plans, new String[] { "-v", "run", "-x" }, true);
+        final CommandLine cl = parser.parse(plans, new String[] { "-v", "walk", "-x" }, true);
+
+        assertEquals(1, plans.getHitCount());
+        assertTrue(cl.hasOption("v"));
+        assertEquals(Arrays.asList("walk", "-x"), cl.getArgList());
+    }
+
+    @Test
+    public void testMismatchFallsBack() throws Exception
+    {
+        final Options options = options();
+        final ParsePlanCache plans = new ParsePlanCache(options, 16);
+        final DefaultParser parser = new DefaultParser();
+
+        parser.parse(plans, new String[] { "--user", "alice" });
+
+        // a value starting with a dash changes the shape
+        final CommandLine cl = parser.parse(plans, new String[] { "--user", "-1" });
+        assertEquals("-1", cl.getOptionValue("user"));
+
+        try
+        {
+            parser.parse(plans, new String[] { "--user", "-v" });
+            fail("MissingArgumentException expected");
+        }
+        catch (final MissingArgumentException e)
+        {
+            assertEquals("u", e.getOption().getOpt());
+        }
+        assertEquals(0, plans.getHitCount());
+        assertEquals(3, plans.getMissCount());
+    }
+
+    @Test
+    public void testFailuresAreNotPlanned() throws Exception
+    {
+        final ParsePlanCache plans = new ParsePlanCache(options(), 16);
+        final DefaultParser parser = new DefaultParser();
+
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                parser.parse(plans, new String[] { "--user" });
+                fail("MissingArgumentException expected");
+            }
+            catch (final MissingArgumentException e)
+            {
+                // expected
+            }
+        }
+        assertEquals(0, plans.getHitCount());
+    }
+
+    @Test
+    public void testOptionChanged() throws Exception
+    {
+        final Options options = options();
+        final ParsePlanCache plans = new ParsePlanCache(options, 16);
+        final DefaultParser parser = new DefaultParser();
+
+        assertEquals(Arrays.asList("b"), parser.parse(plans, new String[] { "-u", "a", "b" }).getArgList());
+
+        options.getOption("u").setArgs(2);
+        final CommandLine cl = parser.parse(plans, new String[] { "-u", "a", "b" });
+        assertEquals(Arrays.asList("a", "b"), cl.getOptionValues("u"));
+        assertFalse(cl.getArgList().contains("b"));
+        assertEquals(0, plans.getHitCount());
+    }
+
+    @Test
+    public void testPartialMatchingIsPartOfThePlan() throws Exception
+    {
+        final Options options = options();
+        final ParsePlanCache plans = new ParsePlanCache(options, 16);
+
+        assertTrue(new DefaultParser(true).parse(plans, new String[] { "--verb" }).hasOption("v"));
+        try
+        {
+            new DefaultParser(false).parse(plans, new String[] { "--verb" });
+            fail("UnrecognizedOptionException expected");
+        }
+        catch (final UnrecognizedOptionException e)
+        {
+            assertEquals("--verb", e.getOption());
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles the parsers written by {@link ParserGenerator} and checks that
+ * they parse like {@link DefaultParser}.
+ */
+public class ParserGeneratorTest
+{
+    /** the tokens the random command lines are made of */
+    private static final String[] TOKENS = {
+        "-a", "-b", "-ab", "-ba", "-abc", "-f", "-fvalue", "-f=value", "-afvalue", "--file", "--file=x", "--fi",
+        "--fi=x", "-file", "-file=x", "--all", "--al", "-al", "--a", "--ver", "--verbose", "--version", "-vers",
+        "-Dkey=value", "-Dflag", "-D", "-Xmx512m", "-Xmx5", "-XXa", "-Xmx", "-Xm", "-XX:+UseG1GC", "-Xlog", "-Xs", "-o", "--output",
+        "-1", "-2.5", "--", "-", "x", "y", "\"quoted\"", "-=x", "--=x", "---all", "-zz", "-x", "-y", "--long-flag",
+        "-e", "-e1", "-\u00e9", "--exclusive", "--exclusive-other" };
+
+    /** the directory of the sources and classes written */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Generates and compiles a parser for the specified options.
+     */
+    private GeneratedParser generate(final Options options, final boolean partial, final String className)
+            throws Exception
+    {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null);
+
+        final File directory = folder.newFolder("parsers");
+
+        final File source = new ParserGenerator(options, partial).generate(className, directory);
+        final int status = compiler.run(null, null, null, "-nowarn", "-encoding", "UTF-8", "-d", directory.getPath(),
+                "-cp", System.getProperty("java.class.path"), source.getPath());
+        assertEquals("compilation of " + source, 0, status);
+
+        final ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() },
+                ParserGeneratorTest.class.getClassLoader());
+        return (GeneratedParser) loader.loadClass(className).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Describes the outcome of a parse: the options and arguments of the
+     * command line, or the exception thrown.
+     */
+    private static String describe(final CommandLine line)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (final Option option : line.getOptions())
+        {
+            buf.append('[').append(option.getOpt()).append(' ').append(option.getLongOpt()).append(' ')
+                    .append(option.getValuesList()).append(' ').append(option.getType()).append(' ')
+                    .append(option.getArgName()).append(' ').append(option.getDescription()).append("] ");
+        }
+        return buf.append(line.getArgList()).toString();
+    }
+
+    private static String describe(final Exception e)
+    {
+        String text = e.getClass().getName() + ": " + e.getMessage();
+        if (e instanceof MissingOptionException)
+        {
+            text += " " + ((MissingOptionException) e).getMissingOptions();
+        }
+        else if (e instanceof AmbiguousOptionException)
+        {
+            text += " " + ((AmbiguousOptionException) e).getMatchingOptions();
+        }
+        return text;
+    }
+
+    /**
+     * Checks that the generated parser and the default parser parse the
+     * command line alike.
+     */
+    private static void assertSameParse(final Options options, final boolean partial, final GeneratedParser generated,
+                                        final boolean stopAtNonOption, final String... args)
+    {
+        String expected;
+        try
+        {
+            expected = describe(new DefaultParser(partial).parse(options, args, stopAtNonOption));
+        }
+        catch (final Exception e)
+        {
+            expected = describe(e);
+        }
+
+        String actual;
+        try
+        {
+            actual = describe(generated.parse(args, stopAtNonOption));
+        }
+        catch (final Exception e)
+        {
+            actual = describe(e);
+        }
+
+        assertEquals(Arrays.toString(args) + (stopAtNonOption ? " stopping at non options" : ""), expected, actual);
+    }
+
+    /**
+     * Parses random command lines with both parsers.
+     */
+    private static void assertSameParses(final Options options, final boolean partial, final GeneratedParser generated)
+    {
+        final Random random = new Random(42);
+        for (int i = 0; i < 3000; i++)
+        {
+            final String[] args = new String[random.nextInt(6)];
+            for (int j = 0; j < args.length; j++)
+            {
+                args[j] = TOKENS[random.nextInt(TOKENS.length)];
+            }
+            assertSameParse(options, partial, generated, random.nextBoolean(), args);
+        }
+    }
+
+    private static Options mixedOptions()
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "all the things");
+        options.addOption("b", false, "toggle -b");
+        options.addOption("c", false, "toggle -c");
+        options.addOption(Option.builder("f").longOpt("file").hasArg().argName("path").desc("the \"file\"").build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        options.addOption(Option.builder("o").longOpt("output").optionalArg(true).numberOfArgs(1).build());
+        options.addOption(Option.builder().longOpt("verbose").build());
+        options.addOption(Option.builder().longOpt("version").build());
+        options.addOption(Option.builder().longOpt("Xmx").hasArg().build());
+        options.addOption(Option.builder().longOpt("XX").hasArg().build());
+        options.addOption(Option.builder().longOpt("Xlog").numberOfArgs(2).valueSeparator(':').build());
+        options.addOption(Option.builder().longOpt("long-flag").type(Number.class).build());
+        options.addOption(Option.builder("\u00e9").hasArg().desc("caf\u00e9 */ \\u0041 <b>").build());
+        return options;
+    }
+
+    @Test
+    public void testMixedOptions() throws Exception
+    {
+        final Options options = mixedOptions();
+        final GeneratedParser parser = generate(options, true, "generated.MixedParser");
+
+        assertSameParse(options, true, parser, false, "-ab", "--file", "x", "-Dk=v", "--verb", "y");
+        assertSameParses(options, true, parser);
+    }
+
+    @Test
+    public void testExactMatching() throws Exception
+    {
+        final Options options = mixedOptions();
+        final GeneratedParser parser = generate(options, false, "generated.ExactParser");
+
+        assertSameParse(options, false, parser, false, "--verb");
+        assertSameParses(options, false, parser);
+    }
+
+    @Test
+    public void testGroupsAndRequiredOptions() throws Exception
+    {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(Option.builder("x").longOpt("exclusive").build());
+        group.addOption(Option.builder("y").longOpt("exclusive-other").hasArg().build());
+        group.setRequired(true);
+
+        final Options options = new Options();
+        options.addRequiredOption("f", "file", true, "required file");
+        options.addOptionGroup(group);
+        options.addOption("a", "all", false, "all the things");
+        options.addOption(Option.builder("e").hasArgs().build());
+
+        final GeneratedParser parser = generate(options, true, "GroupParser");
+
+        assertSameParse(options, true, parser, false, "-x", "-y", "value");
+        assertSameParse(options, true, parser, false, "-a");
+        assertSameParses(options, true, parser);
+    }
+
+    @Test
+    public void testPattern() throws Exception
+    {
+        final Options options = PatternOptionBuilder.parsePattern("a:b@cde>f+n%t/m*z#!x");
+        final GeneratedParser parser = generate(options, true, "generated.pattern.PatternParser");
+
+        final String[] args = { "-c", "-f", "java.util.Calendar", "-n", "4.5", "-z", "today" };
+        final CommandLine line = parser.parse(args);
+
+        assertTrue(line.hasOption('c'));
+        assertEquals(java.util.Calendar.class, line.getParsedOptionValue("f"));
+        assertEquals(4.5, line.getParsedOptionValue("n"));
+        assertSameParses(options, true, parser);
+    }
+
+    @Test
+    public void testProperties() throws Exception
+    {
+        final Options options = mixedOptions();
+        final GeneratedParser parser = generate(options, true, "generated.PropertiesParser");
+
+        final Properties properties = new Properties();
+        properties.setProperty("all", "yes");
+        properties.setProperty("file", "x");
+        properties.setProperty("D", "k=v");
+        final String[] args = { "-b", "y" };
+
+        final CommandLine expected = new DefaultParser().parse(options, args, properties);
+        final CommandLine actual = parser.parse(args, properties, false);
+
+        assertEquals(describe(expected), describe(actual));
+        assertTrue(actual.hasOption("a"));
+        assertEquals("x", actual.getOptionValue("file"));
+    }
+
+    @Test
+    public void testNoOptions() throws Exception
+    {
+        final Options options = new Options();
+        final GeneratedParser parser = generate(options, true, "generated.EmptyParser");
+
+        assertEquals(Arrays.asList("x", "--", "-y"), parser.parse(new String[] { "x", "--", "--", "-y" }).getArgList());
+        assertSameParses(options, true, parser);
+    }
+
+    @Test
+    public void testSource() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "all the things");
+        options.addOption(Option.builder().longOpt("verbose").build());
+
+        final StringWriter source = new StringWriter();
+        new ParserGenerator(options).generate("com.example.MainParser", source);
+
+        assertTrue(source.toString().contains("package com.example;"));
+        assertTrue(source.toString().contains("public final class MainParser extends GeneratedParser"));
+        assertTrue(source.toString().contains("private static final String[] NAMES = {"));
+        assertTrue(source.toString().contains("\"verbose\""));
+        assertTrue(source.toString().contains("super(true, OPTIONS, NAMES, NAME_KEY, NAME_LONG, NAME_TARGET, GROUPS"));
+    }
+
+    @Test
+    public void testLiterals()
+    {
+        assertEquals("null", ParserGenerator.literal(null));
+        assertEquals("\"a\\\"b\\\\c\\n\\u00e9\"", ParserGenerator.literal("a\"b\\c\n\u00e9"));
+        assertEquals("'\\''", ParserGenerator.literal('\''));
+        assertEquals("'\\u0000'", ParserGenerator.literal('\0'));
+    }
+
+    @Test
+    public void testReplacedGroupMember()
+    {
+        final OptionGroup group = new OptionGroup();
+        group.addOption(new Option("x", "first"));
+
+        final Options options = new Options();
+        options.addOptionGroup(group);
+        options.addOption(new Option("x", "second"));
+
+        try
+        {
+            new ParserGenerator(options);
+            fail("IllegalArgumentException expected");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMain() throws Exception
+    {
+        final File directory = folder.newFolder("parsers");
+
+        final List<String> args = new ArrayList<String>();
+        args.addAll(Arrays.asList("--pattern", "vp:!f/", "--options", "", "--class", "com.example.MainParser"));
+        args.addAll(Arrays.asList("-d", directory.getPath()));
+        ParserGenerator.main(args.toArray(new String[0]));
+
+        assertTrue(new File(directory, "com/example/MainParser.java").isFile());
+    }
+
+    @Test
+    public void testMainWithExternalOptions() throws Exception
+    {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null);
+
+        // an options class compiled apart, outside the classpath of the library
+        final File classes = folder.newFolder("classes");
+        final File source = new File(folder.newFolder("example"), "Tool.java");
+        final Writer out = new OutputStreamWriter(new FileOutputStream(source), "UTF-8");
+        try
+        {
+            out.write("package example;\n");
+            out.write("public class Tool {\n");
+            out.write("    static org.apache.commons.cli.Options options() {\n");
+            out.write("        return new org.apache.commons.cli.Options().addOption(\"v\", \"verbose\", false, \"v\");\n");
+            out.write("    }\n");
+            out.write("}\n");
+        }
+        finally
+        {
+            out.close();
+        }
+        assertEquals(0, compiler.run(null, null, null, "-nowarn", "-d", classes.getPath(),
+                "-cp", System.getProperty("java.class.path"), source.getPath()));
+
+        final File directory = folder.newFolder("parsers");
+        final Thread thread = Thread.currentThread();
+        final ClassLoader loader = thread.getContextClassLoader();
+        thread.setContextClassLoader(new URLClassLoader(new URL[] { classes.toURI().toURL() },
+                ParserGeneratorTest.class.getClassLoader()));
+        try
+        {
+            ParserGenerator.main(new String[] { "--options", "example.Tool#options", "--class", "example.ToolParser",
+                "-d", directory.getPath() });
+        }
+        finally
+        {
+            thread.setContextClassLoader(loader);
+        }
+
+        final File parser = new File(directory, "example/ToolParser.java");
+        assertTrue(parser.isFile());
+    }
+}
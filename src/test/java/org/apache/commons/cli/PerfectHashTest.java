@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PerfectHashTest
+{
+    @Test
+    public void testFind()
+    {
+        final PerfectHash hash = PerfectHash.of(new String[] { "verbose", "version", "ver", "v" });
+
+        assertEquals(4, hash.size());
+        assertEquals(0, hash.find("verbose", 0, 7));
+        assertEquals(1, hash.find("--version", 2, 9));
+        assertEquals(2, hash.find("ver", 0, 3));
+        assertEquals(3, hash.find("-v=1", 1, 2));
+        assertEquals(-1, hash.find("ve", 0, 2));
+        assertEquals(-1, hash.find("verb", 0, 4));
+        assertEquals(-1, hash.find("verbosely", 0, 9));
+        assertEquals(-1, hash.find("", 0, 0));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        final PerfectHash hash = PerfectHash.of(new String[0]);
+
+        assertEquals(0, hash.size());
+        assertEquals(-1, hash.find("a", 0, 1));
+        assertEquals(-1, hash.find("", 0, 0));
+    }
+
+    @Test
+    public void testEmptyName()
+    {
+        final PerfectHash hash = PerfectHash.of(new String[] { "", "a" });
+
+        assertEquals(0, hash.find("--", 2, 2));
+        assertEquals(1, hash.find("a", 0, 1));
+    }
+
+    @Test
+    public void testSameHashCode()
+    {
+        // "Aa" and "BB" have the same String.hashCode()
+        assertNull(PerfectHash.of(new String[] { "Aa", "BB" }));
+        assertNotNull(PerfectHash.of(new String[] { "Aa", "BBB" }));
+    }
+
+    @Test
+    public void testLargeSet()
+    {
+        final Set<String> set = new LinkedHashSet<String>();
+        final Random random = new Random(42);
+        while (set.size() < 6000)
+        {
+            final StringBuilder name = new StringBuilder();
+            final int length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; i++)
+            {
+                name.append((char) ('a' + random.nextInt(4)));
+            }
+            set.add(name.toString());
+        }
+        final String[] names = set.toArray(new String[set.size()]);
+        final PerfectHash hash = PerfectHash.of(names);
+        assertNotNull(hash);
+
+        for (int i = 0; i < names.length; i++)
+        {
+            assertEquals(names[i], i, hash.find("--" + names[i] + "=x", 2, names[i].length() + 2));
+        }
+        for (int i = 0; i < 10000; i++)
+        {
+            final String name = "x" + i;
+            assertEquals(name, -1, hash.find(name, 0, name.length()));
+        }
+    }
+}
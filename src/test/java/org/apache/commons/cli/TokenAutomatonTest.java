@@ -0,0 +1,297 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the lookups of a token, done by separate lookups of
+ * {@link CompiledOptions} and then by a walk of its {@link TokenAutomaton},
+ * against a plain reference working on maps of the names.
+ */
+public class TokenAutomatonTest
+{
+    /** the result of a partial long name matching several long names */
+    private static final String AMBIGUOUS = "ambiguous";
+
+    /**
+     * The lookups of a token done the obvious way, on maps of the names
+     * filled like the tables of {@link Options}.
+     */
+    private static final class Reference
+    {
+        final Options options = new Options();
+        final Map<String, Option> keys = new HashMap<>();
+        final Map<String, Option> longs = new LinkedHashMap<>();
+
+        void add(final Option option)
+        {
+            options.addOption(option);
+            if (option.getLongOpt() != null)
+            {
+                longs.put(option.getLongOpt(), option);
+            }
+            keys.put(option.getKey(), option);
+        }
+
+        Option resolve(final String name)
+        {
+            return keys.containsKey(name) ? keys.get(name) : longs.get(name);
+        }
+
+        Object longMatch(final String name, final boolean partial)
+        {
+            if (longs.containsKey(name))
+            {
+                return resolve(name);
+            }
+            if (!partial)
+            {
+                return null;
+            }
+
+            String match = null;
+            for (final String longName : longs.keySet())
+            {
+                if (longName.startsWith(name))
+                {
+                    if (match != null)
+                    {
+                        return AMBIGUOUS;
+                    }
+                    match = longName;
+                }
+            }
+            return match == null ? null : resolve(match);
+        }
+
+        String longPrefix(final String token)
+        {
+            for (int length = token.length() - 3; length >= 2; length--)
+            {
+                final String name = token.substring(1, 1 + length);
+                if (longs.containsKey(name))
+                {
+                    return name;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String name(final Random random, final String alphabet, final int maxLength)
+    {
+        final StringBuilder buf = new StringBuilder();
+        final int length = 1 + random.nextInt(maxLength);
+        for (int i = 0; i < length; i++)
+        {
+            buf.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return buf.toString();
+    }
+
+    private static Reference randomOptions(final Random random)
+    {
+        final Reference reference = new Reference();
+        final int count = 1 + random.nextInt(8);
+        for (int i = 0; i < count; i++)
+        {
+            final String opt = random.nextInt(4) == 0 ? null : name(random, "abcD", 2);
+            final String longOpt = random.nextInt(3) == 0 ? null : name(random, "abcD-=", 6);
+            reference.add(new Option(opt == null && longOpt == null ? "a" : opt, longOpt, random.nextBoolean(), "d"));
+        }
+        return reference;
+    }
+
+    static CompiledOptions withAutomaton(final CompiledOptions options)
+    {
+        for (int i = 0; i < CompiledOptions.AUTOMATON_AFTER; i++)
+        {
+            options.automaton();
+        }
+        assertNotNull(options.automaton());
+        return options;
+    }
+
+    private static Object option(final CompiledOptions options, final int ordinal)
+    {
+        if (ordinal == CompiledOptions.AMBIGUOUS)
+        {
+            return AMBIGUOUS;
+        }
+        return ordinal == -1 ? null : options.option(ordinal);
+    }
+
+    private static void check(final Reference reference, final CompiledOptions options, final String token)
+    {
+        final Token t = new Token().reset(token);
+        final int from = t.isDoubleDash() ? 2 : 1;
+        final String name = token.substring(from, t.end);
+
+        for (final boolean partial : new boolean[] { true, false })
+        {
+            final Object expected = reference.longMatch(name, partial);
+            assertEquals(token, expected, option(options, t.longMatch(options, partial)));
+            assertEquals(token, expected, option(options, options.matchLong(token, from, t.end, partial)));
+        }
+
+        final int keyFrom = token.startsWith("---") ? 3 : from;
+        final Option key = reference.keys.get(token.substring(keyFrom, t.end));
+        assertEquals(token, key, option(options, t.keyMatch(options)));
+        assertEquals(token, key, option(options, options.keyOrdinal(token, keyFrom, t.end)));
+        assertEquals(token, reference.resolve(name), option(options, options.resolve(token, from, t.end)));
+
+        if (!t.isDoubleDash())
+        {
+            final String prefix = reference.longPrefix(token);
+            final int index = t.longPrefix(options);
+            assertEquals(token, prefix, index == -1 ? null : options.longName(index));
+            final int direct = options.longestLongPrefix(token, 1, token.length(), 2, token.length() - 3);
+            assertEquals(token, prefix, direct == -1 ? null : options.longName(direct));
+        }
+    }
+
+    @Test
+    public void testSameLookupsAsReference()
+    {
+        final Random random = new Random(1234);
+        for (int i = 0; i < 2000; i++)
+        {
+            final Reference reference = randomOptions(random);
+            final List<String> tokens = new ArrayList<>();
+            for (int j = 0; j < 30; j++)
+            {
+                final String prefix = new String[] { "-", "--", "---" }[random.nextInt(3)];
+                tokens.add(prefix + name(random, "abcD-=x1", 9));
+            }
+            for (final Option option : reference.options.getOptions())
+            {
+                if (option.getLongOpt() != null)
+                {
+                    tokens.add("--" + option.getLongOpt());
+                    tokens.add("-" + option.getLongOpt() + "=value");
+                    tokens.add("-" + option.getLongOpt() + "512m");
+                }
+                tokens.add("-" + option.getKey());
+            }
+
+            // fewer tokens than needed to build the automaton, then the same tokens with it
+            final CompiledOptions options = reference.options.compile();
+            for (final String token : tokens)
+            {
+                check(reference, options, token);
+            }
+            withAutomaton(options);
+            for (final String token : tokens)
+            {
+                check(reference, options, token);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeOptionSet()
+    {
+        final Reference reference = new Reference();
+        for (int i = 0; i < 5000; i++)
+        {
+            reference.add(Option.builder("s" + i).longOpt("service-" + i % 37 + "-operation-" + i + "-timeout").build());
+        }
+
+        final CompiledOptions compiled = reference.options.compile();
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int i = 0; i < 5000; i += 7)
+            {
+                final String longOpt = "service-" + i % 37 + "-operation-" + i + "-timeout";
+                check(reference, compiled, "-s" + i);
+                check(reference, compiled, "--" + longOpt);
+                check(reference, compiled, "--" + longOpt.substring(0, longOpt.length() - 3));
+                check(reference, compiled, "-" + longOpt + "=value");
+                check(reference, compiled, "--service-" + i % 37 + "-operation-" + i + "-retries");
+            }
+            check(reference, compiled, "--service-");
+            check(reference, compiled, "-s5000");
+            check(reference, compiled, "-service-1-operation-1-timeout60");
+            withAutomaton(compiled);
+        }
+    }
+
+    @Test
+    public void testBuiltAfterSomeTokens() throws Exception
+    {
+        final Options options = new Options();
+        options.addOption("a", "all", false, "toggle -a");
+
+        final CompiledOptions compiled = options.compile();
+        final DefaultParser parser = new DefaultParser();
+        final String[] args = { "-a", "--all", "--al", "x" };
+
+        parser.parse(compiled, args);
+        assertNull(compiled.automaton());
+
+        for (int i = 0; i < CompiledOptions.AUTOMATON_AFTER; i++)
+        {
+            assertTrue(parser.parse(compiled, args).hasOption("a"));
+        }
+        assertNotNull(compiled.automaton());
+    }
+
+    @Test
+    public void testStates()
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder().longOpt("version").build());
+        options.addOption(Option.builder().longOpt("Xmx").hasArg().build());
+
+        final CompiledOptions compiled = withAutomaton(options.compile());
+        final TokenAutomaton automaton = compiled.automaton();
+
+        // the empty prefix, the prefixes of verbose, those of version after "ver" and the prefixes of Xmx
+        assertEquals(1 + 7 + 4 + 3, automaton.size());
+
+        int state = TokenAutomaton.START;
+        for (final char c : "ver".toCharArray())
+        {
+            state = automaton.next(state, c);
+        }
+        assertEquals(CompiledOptions.AMBIGUOUS, automaton.partial(state));
+        assertEquals(-1, automaton.key(state));
+        assertEquals(-1, automaton.next(state, 'x'));
+
+        state = automaton.next(state, 'b');
+        assertEquals(compiled.keyOrdinal("v"), automaton.partial(state));
+        assertEquals(compiled.keyOrdinal("v"), automaton.key(automaton.next(TokenAutomaton.START, 'v')));
+
+        final Token token = new Token().reset("-Xmx512m");
+        assertEquals("Xmx", compiled.longName(token.longPrefix(compiled)));
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TokenCacheTest
+{
+    private static Options options()
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose");
+        options.addOption(Option.builder("f").longOpt("format").hasArg().build());
+        options.addOption(Option.builder("X").hasArg().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        options.addOption(Option.builder("n").longOpt("number").hasArg().build());
+        return options;
+    }
+
+    private static String describe(final CommandLine cl)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (final Option option : cl.getOptions())
+        {
+            buf.append(option.getKey()).append(option.getValuesList()).append(' ');
+        }
+        return buf.append(cl.getArgList()).toString();
+    }
+
+    @Test
+    public void testSameResultsAsWithoutCache() throws Exception
+    {
+        final Options options = options();
+        final TokenCache cache = new TokenCache(options, 64);
+        final DefaultParser cached = new DefaultParser(true, cache);
+        final DefaultParser plain = new DefaultParser();
+
+        final String[][] commandLines = {
+            { "--verbose", "--format=json", "-Xmx4g", "-Dkey=value", "file" },
+            { "-v", "--form", "xml", "-n", "-1", "-X", "-5" },
+            { "-Dflag", "--number", "-5", "--verbose", "--", "-v" },
+            { "-vfjson", "--format", "-1", "--verb" },
+        };
+        for (int i = 0; i < 3; i++)
+        {
+            for (final String[] args : commandLines)
+            {
+                assertEquals(Arrays.toString(args), describe(plain.parse(options, args)),
+                        describe(cached.parse(options, args)));
+            }
+        }
+
+        assertTrue(cache.getHitCount() > 0);
+        assertTrue(cache.getMissCount() > 0);
+        assertEquals((double) cache.getHitCount() / (cache.getHitCount() + cache.getMissCount()), cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void testHits() throws Exception
+    {
+        final Options options = options();
+        final TokenCache cache = new TokenCache(options, 64);
+        final DefaultParser parser = new DefaultParser(true, cache);
+        final String[] args = { "--verbose", "--format=json", "-Xmx4g", "arg" };
+
+        parser.parse(options, args);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        parser.parse(options, args);
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0);
+
+        cache.clear();
+        parser.parse(options, args);
+        assertEquals(6, cache.getMissCount());
+    }
+
+    @Test
+    public void testPartialMatchingIsPartOfTheKey() throws Exception
+    {
+        final Options options = options();
+        final TokenCache cache = new TokenCache(options, 64);
+
+        assertTrue(new DefaultParser(true, cache).parse(options, new String[] { "--verb" }).hasOption("v"));
+        try
+        {
+            new DefaultParser(false, cache).parse(options, new String[] { "--verb" });
+            fail("UnrecognizedOptionException expected");
+        }
+        catch (final UnrecognizedOptionException e)
+        {
+            assertEquals("--verb", e.getOption());
+        }
+    }
+
+    @Test
+    public void testOptionChanged() throws Exception
+    {
+        final Options options = options();
+        final TokenCache cache = new TokenCache(options, 64);
+        final DefaultParser parser = new DefaultParser(true, cache);
+
+        assertTrue(parser.parse(options, new String[] { "-Dkey=value" }).hasOption("D"));
+
+        // -D no longer takes properties, -Dkey=value is now an unknown long option
+        options.getOption("D").setArgs(1);
+        try
+        {
+            parser.parse(options, new String[] { "-Dkey=value" });
+            fail("UnrecognizedOptionException expected");
+        }
+        catch (final UnrecognizedOptionException e)
+        {
+            assertEquals("-Dkey=value", e.getOption());
+        }
+    }
+
+    @Test
+    public void testOtherOptionsIgnoreTheCache() throws Exception
+    {
+        final Options options = options();
+        final TokenCache cache = new TokenCache(options, 64);
+        final DefaultParser parser = new DefaultParser(true, cache);
+
+        final Options other = new Options();
+        other.addOption("w", "wide", false, "wide");
+        final CommandLine cl = parser.parse(other, new String[] { "--wide" });
+
+        assertTrue(cl.hasOption("w"));
+        assertFalse(cl.hasOption("v"));
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testMaximumSize()
+    {
+        assertEquals(1, new TokenCache(options(), 1).getMaximumSize());
+        assertEquals(4, new TokenCache(options(), 4).getMaximumSize());
+        assertEquals(8, new TokenCache(options(), 5).getMaximumSize());
+
+        try
+        {
+            new TokenCache(options(), 0);
+            fail("IllegalArgumentException expected");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+}
@@ -18,7 +18,9 @@
 package org.apache.commons.cli;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -42,4 +44,88 @@ public class UtilTest
         assertEquals("\"foo\" and \"bar\"", Util.stripLeadingAndTrailingQuotes("\"foo\" and \"bar\""));
         assertEquals("\"", Util.stripLeadingAndTrailingQuotes("\""));
     }
+
+    @Test
+    public void testIsNumber()
+    {
+        assertTrue(Util.isNumber("-1"));
+        assertTrue(Util.isNumber("-1.5e-3"));
+        assertTrue(Util.isNumber("-.5"));
+        assertTrue(Util.isNumber("-5."));
+        assertTrue(Util.isNumber("-1f"));
+        assertTrue(Util.isNumber(" -1 "));
+        assertTrue(Util.isNumber("-Infinity"));
+        assertTrue(Util.isNumber("-NaN"));
+        assertTrue(Util.isNumber("-0x1.8p1"));
+        assertTrue(Util.isNumber("-0X.8P-1d"));
+
+        assertFalse(Util.isNumber(""));
+        assertFalse(Util.isNumber("-"));
+        assertFalse(Util.isNumber("-."));
+        assertFalse(Util.isNumber("-1e"));
+        assertFalse(Util.isNumber("-1.2.3"));
+        assertFalse(Util.isNumber("-1ff"));
+        assertFalse(Util.isNumber("-0x1.8"));
+        assertFalse(Util.isNumber("-0x.p1"));
+        assertFalse(Util.isNumber("-infinity"));
+        assertFalse(Util.isNumber("-a"));
+        assertFalse(Util.isNumber("--1"));
+    }
+
+    @Test
+    public void testIsNumberMatchesParseDouble()
+    {
+        final String[] literals = {
+            "NaN", "+NaN", "-NaN", "NaNd", "NaN ", " NaN", "Nan", "NaNN",
+            "Infinity", "+Infinity", "-Infinity", "Infinityf", "Infinit", "Infinityy", "\tInfinity\n",
+            "1234567890", "-0.000001e+10", "1e400", "-1e-400", "0x1p1", "0x1P-1F", "0xfp1", "0x1.fffffffffffffp1023",
+            "0xp1", "0x.p1", "0x1.1.1p1", "0x1p", "0x1p+", "0x1pf", "0x1p1ff", "0x1g1", "\u0661", "1\u0661", "1e\u0661",
+            "\u00001\u0000", "1\u00a0", "1 1", "- 1", "1-", "1e1.5", "1e1e1"
+        };
+        for (final String literal : literals)
+        {
+            assertIsNumber(literal);
+        }
+
+        // every short string over an alphabet covering the grammar
+        enumerate(new StringBuilder(), "-+0159.eEfFdDxXpPaN \t", 4);
+        enumerate(new StringBuilder(), "-0.1exXpf ", 5);
+        enumerate(new StringBuilder(), "-+0.1epf", 6);
+    }
+
+    /**
+     * Checks all the strings of up to <code>length</code> more characters
+     * from <code>alphabet</code> starting with <code>prefix</code>.
+     */
+    private void enumerate(final StringBuilder prefix, final String alphabet, final int length)
+    {
+        assertIsNumber(prefix.toString());
+        if (length == 0)
+        {
+            return;
+        }
+
+        for (int i = 0; i < alphabet.length(); i++)
+        {
+            prefix.append(alphabet.charAt(i));
+            enumerate(prefix, alphabet, length - 1);
+            prefix.setLength(prefix.length() - 1);
+        }
+    }
+
+    private void assertIsNumber(final String str)
+    {
+        boolean expected;
+        try
+        {
+            Double.parseDouble(str);
+            expected = true;
+        }
+        catch (final NumberFormatException e)
+        {
+            expected = false;
+        }
+
+        assertEquals("\"" + str + "\"", expected, Util.isNumber(str));
+    }
 }
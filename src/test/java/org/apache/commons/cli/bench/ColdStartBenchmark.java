@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.ToolProvider;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.GeneratedParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParserGenerator;
+
+/**
+ * Measures the time a fresh JVM takes to parse its first command line,
+ * building its {@link Options} and running {@link DefaultParser}, or
+ * running a parser written by {@link ParserGenerator} for the same
+ * options. Each parse runs in a new JVM; the time is measured from the
+ * start of <code>main</code>, so the start of the JVM itself is left out.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.ColdStartBenchmark [runs]</code>.
+ */
+public class ColdStartBenchmark
+{
+    /** The name of the generated parser class. */
+    private static final String PARSER = "org.apache.commons.cli.bench.generated.ToolParser";
+
+    /** The command line parsed. */
+    private static final String[] ARGS = { "-v", "--output", "out.txt", "-Dkey=value", "--thread=4", "-q", "--incl",
+        "src", "-cf", "build.xml", "input1", "input2" };
+
+    public static void main(final String[] args) throws Exception
+    {
+        if (args.length == 2 && "child".equals(args[0]))
+        {
+            final long start = System.nanoTime();
+            final CommandLine line;
+            if ("default".equals(args[1]))
+            {
+                line = new DefaultParser().parse(options(), ARGS);
+            }
+            else
+            {
+                final GeneratedParser parser = (GeneratedParser) Class.forName(PARSER).getDeclaredConstructor().newInstance();
+                line = parser.parse(ARGS);
+            }
+            final long end = System.nanoTime();
+            if (line.getArgs().length != 2)
+            {
+                throw new IllegalStateException("unexpected arguments: " + line.getArgList());
+            }
+            System.out.println(end - start);
+            return;
+        }
+
+        final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        // write and compile the parser next to the benchmark
+        final File directory = File.createTempFile("parsers", "");
+        if (!directory.delete() || !directory.mkdir())
+        {
+            throw new IllegalStateException("cannot create " + directory);
+        }
+        final File source = new ParserGenerator(options()).generate(PARSER, directory);
+        final String classpath = System.getProperty("java.class.path") + File.pathSeparator + directory;
+        if (ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", directory.getPath(), "-cp", classpath,
+                source.getPath()) != 0)
+        {
+            throw new IllegalStateException("cannot compile " + source);
+        }
+
+        System.out.printf("%-12s %12s %12s%n", "parser", "median us", "best us");
+        for (final String mode : new String[] { "default", "generated" })
+        {
+            final long[] times = new long[runs];
+            for (int i = 0; i < runs; i++)
+            {
+                times[i] = run(classpath, mode);
+            }
+            Arrays.sort(times);
+            System.out.printf("%-12s %12.1f %12.1f%n", mode, times[runs / 2] / 1e3, times[0] / 1e3);
+        }
+    }
+
+    /**
+     * Runs a parse in a new JVM and returns the time it took.
+     */
+    private static long run(final String classpath, final String mode) throws Exception
+    {
+        final List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(Arrays.asList("-cp", classpath, ColdStartBenchmark.class.getName(), "child", mode));
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        final String line = reader.readLine();
+        if (process.waitFor() != 0 || line == null)
+        {
+            throw new IllegalStateException("the " + mode + " parse failed: " + line);
+        }
+        return Long.parseLong(line.trim());
+    }
+
+    /**
+     * Returns the options of a typical command line tool.
+     */
+    private static Options options()
+    {
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "print more details");
+        options.addOption("q", "quiet", false, "print nothing");
+        options.addOption("c", "check", false, "check the configuration");
+        options.addOption("h", "help", false, "print this help");
+        options.addOption(Option.builder("o").longOpt("output").hasArg().argName("file").desc("the output").build());
+        options.addOption(Option.builder("f").longOpt("file").hasArg().argName("file").desc("the build file").build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().desc("a property").build());
+        options.addOption(Option.builder("t").longOpt("threads").hasArg().type(Number.class).build());
+        options.addOption(Option.builder("I").longOpt("include").hasArgs().desc("the include paths").build());
+        options.addOption(Option.builder("l").longOpt("log-level").hasArg().build());
+        options.addOption(Option.builder().longOpt("log-file").hasArg().build());
+        options.addOption(Option.builder().longOpt("dry-run").build());
+        options.addOption(Option.builder().longOpt("version").build());
+        options.addOption(Option.builder().longOpt("color").optionalArg(true).numberOfArgs(1).build());
+        return options;
+    }
+}
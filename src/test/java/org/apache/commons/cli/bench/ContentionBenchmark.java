@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Measures the parse throughput of a single {@link DefaultParser} shared by
+ * an increasing number of threads. With no shared mutable state the
+ * throughput should grow with the number of cores.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.ContentionBenchmark [seconds]</code>.
+ */
+public class ContentionBenchmark
+{
+    private static final String[] ARGS = {
+        "-v", "--file", "input.txt", "--output=out.txt", "-Dkey=value", "-Dother=thing", "a", "b", "c"
+    };
+
+    public static void main(final String[] args) throws Exception
+    {
+        final double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+
+        final Options options = new Options();
+        options.addOption("v", "verbose", false, "verbose output");
+        options.addOption(Option.builder("f").longOpt("file").hasArg().build());
+        options.addOption(Option.builder("o").longOpt("output").hasArg().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+
+        final CommandLineParser parser = new DefaultParser();
+
+        // warm up
+        run(parser, options, 1, seconds / 2);
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%8s %16s %10s%n", "threads", "parses/s", "scaling");
+        double single = 0;
+        for (int threads = 1; threads <= cores * 2; threads *= 2)
+        {
+            final double rate = run(parser, options, threads, seconds);
+            if (threads == 1)
+            {
+                single = rate;
+            }
+            System.out.printf("%8d %16.0f %10.2f%n", threads, rate, rate / single);
+        }
+    }
+
+    /**
+     * Parses {@link #ARGS} from the specified number of threads for the
+     * specified time and returns the total number of parses per second.
+     */
+    private static double run(final CommandLineParser parser, final Options options, final int threads,
+                              final double seconds) throws InterruptedException
+    {
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final long deadline = System.nanoTime() + (long) (seconds * 1e9);
+
+        for (int t = 0; t < threads; t++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    long parses = 0;
+                    try
+                    {
+                        start.await();
+                        while (System.nanoTime() < deadline)
+                        {
+                            for (int i = 0; i < 100; i++)
+                            {
+                                parser.parse(options, ARGS);
+                            }
+                            parses += 100;
+                        }
+                    }
+                    catch (final InterruptedException | ParseException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                    finally
+                    {
+                        count.addAndGet(parses);
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+        return count.get() / seconds;
+    }
+}
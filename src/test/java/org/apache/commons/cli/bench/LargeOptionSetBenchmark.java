@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Measures the first parse with a very large option set, which compiles
+ * the options and builds their indexes, and the later parses of a fresh
+ * copy of the same options once the JVM is warm. The first parse is what
+ * a command line tool pays once per run.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.LargeOptionSetBenchmark [options] [rounds]</code>.
+ */
+public class LargeOptionSetBenchmark
+{
+    public static void main(final String[] args) throws Exception
+    {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final String[] line = { "-s1", "--service-" + count / 2 % 37 + "-operation-" + count / 2 + "-timeout", "10",
+            "input" };
+
+        final long first = parse(count, line);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++)
+        {
+            best = Math.min(best, parse(count, line));
+        }
+
+        System.out.printf("%d options%n", count);
+        System.out.printf("%-12s %12s%n", "parse", "ms");
+        System.out.printf("%-12s %12.1f%n", "first", first / 1e6);
+        System.out.printf("%-12s %12.1f%n", "warm", best / 1e6);
+    }
+
+    /**
+     * Builds the options and parses the command line with them, returning
+     * the time of the parse in nanoseconds.
+     */
+    private static long parse(final int count, final String[] line) throws Exception
+    {
+        final Options options = new Options();
+        for (int i = 0; i < count; i++)
+        {
+            options.addOption(Option.builder("s" + i).longOpt("service-" + i % 37 + "-operation-" + i + "-timeout")
+                    .hasArg(i % 2 == 0).build());
+        }
+
+        final long start = System.nanoTime();
+        final CommandLine cl = new DefaultParser().parse(options, line);
+        final long end = System.nanoTime();
+        if (cl.getArgs().length != 1)
+        {
+            throw new IllegalStateException("unexpected arguments: " + cl.getArgList());
+        }
+        return end - start;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.cli.CompiledOptions;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Measures the time of a name lookup in a very large option set, like the
+ * ones generated from service schemas, in {@link Options} and in its
+ * {@link CompiledOptions} form. The names looked up are a mix of short
+ * names, long names and absent names, in a random order.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.NameLookupBenchmark [seconds] [options]</code>.
+ */
+public class NameLookupBenchmark
+{
+    /** the services and the operations the option names are made of */
+    private static final String[] SERVICES = { "billing", "catalog", "identity", "inventory", "notification",
+        "payment", "search", "shipping", "storage", "telemetry" };
+
+    public static void main(final String[] args) throws Exception
+    {
+        final double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+        final int count = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+
+        final Options options = new Options();
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            final String service = SERVICES[i % SERVICES.length];
+            final String longName = service + "-operation-" + i / SERVICES.length + "-timeout";
+            options.addOption(Option.builder("s" + i).longOpt(longName).hasArg().build());
+            names.add("s" + i);
+            names.add(longName);
+            names.add(service + "-operation-" + i / SERVICES.length + "-retries");
+        }
+        Collections.shuffle(names, new Random(42));
+        final String[] lookups = names.toArray(new String[0]);
+        final CompiledOptions compiled = options.compile();
+
+        // warm up
+        runOptions(options, lookups, seconds / 2);
+        runCompiled(compiled, lookups, seconds / 2);
+
+        final double optionsRate = runOptions(options, lookups, seconds);
+        final double compiledRate = runCompiled(compiled, lookups, seconds);
+
+        System.out.printf("%d options, %d lookups, a third of them absent%n", count, lookups.length);
+        System.out.printf("%-12s %12s%n", "lookup", "ns/name");
+        System.out.printf("%-12s %12.1f%n", "options", 1e9 / optionsRate / lookups.length);
+        System.out.printf("%-12s %12.1f%n", "compiled", 1e9 / compiledRate / lookups.length);
+    }
+
+    /**
+     * Looks up all the names in the options for the specified time and
+     * returns the number of rounds per second.
+     */
+    private static double runOptions(final Options options, final String[] lookups, final double seconds)
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + (long) (seconds * 1e9);
+        long rounds = 0;
+        long found = 0;
+        long now;
+        do
+        {
+            for (final String name : lookups)
+            {
+                if (options.getOption(name) != null && options.hasLongOption(name) | options.hasShortOption(name))
+                {
+                    found++;
+                }
+            }
+            rounds++;
+            now = System.nanoTime();
+        }
+        while (now < deadline);
+
+        check(found, rounds, lookups);
+        return rounds * 1e9 / (now - start);
+    }
+
+    /**
+     * Looks up all the names in the compiled options for the specified
+     * time and returns the number of rounds per second.
+     */
+    private static double runCompiled(final CompiledOptions options, final String[] lookups, final double seconds)
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + (long) (seconds * 1e9);
+        long rounds = 0;
+        long found = 0;
+        long now;
+        do
+        {
+            for (final String name : lookups)
+            {
+                if (options.getOption(name) != null && options.hasLongOption(name) | options.hasShortOption(name))
+                {
+                    found++;
+                }
+            }
+            rounds++;
+            now = System.nanoTime();
+        }
+        while (now < deadline);
+
+        check(found, rounds, lookups);
+        return rounds * 1e9 / (now - start);
+    }
+
+    /**
+     * Checks that two thirds of the names were found, which also keeps the
+     * lookups from being optimized away.
+     */
+    private static void check(final long found, final long rounds, final String[] lookups)
+    {
+        if (found != rounds * lookups.length / 3 * 2)
+        {
+            throw new IllegalStateException("unexpected number of names found: " + found);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseContext;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.ParsePlanCache;
+
+/**
+ * Measures the time {@link DefaultParser} spends and the memory it allocates
+ * per token on a few typical command lines, the time spent validating
+ * them instead, and the time spent parsing them through a
+ * {@link ParsePlanCache} once their plan is cached. The allocations are only reported on JVMs providing per
+ * thread allocation counters.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.ParserBenchmark [seconds]</code>.
+ */
+public class ParserBenchmark
+{
+    /** Parses the command lines. */
+    private static final int PARSE = 0;
+
+    /** Validates the command lines. */
+    private static final int VALIDATE = 1;
+
+    /** Parses the command lines through a plan cache. */
+    private static final int PLAN = 2;
+
+    /** A command line to parse, against the options it is written for. */
+    private static final class Scenario
+    {
+        final String name;
+        final Options options;
+        final String[] args;
+
+        Scenario(final String name, final Options options, final String[] args)
+        {
+            this.name = name;
+            this.options = options;
+            this.args = args;
+        }
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+
+        final DefaultParser parser = new DefaultParser();
+
+        System.out.printf("%-16s %8s %14s %12s %12s %16s %12s%n", "scenario", "tokens", "parses/s", "ns/token", "B/token",
+                "validate ns/tok", "plan ns/tok");
+        for (final Scenario scenario : scenarios())
+        {
+            // warm up
+            run(parser, scenario, seconds / 2, PARSE);
+            run(parser, scenario, seconds / 2, VALIDATE);
+            run(parser, scenario, seconds / 2, PLAN);
+
+            final double rate = run(parser, scenario, seconds, PARSE);
+            final double validations = run(parser, scenario, seconds, VALIDATE);
+            final double planned = run(parser, scenario, seconds, PLAN);
+            System.out.printf("%-16s %8d %14.0f %12.1f %12.1f %16.1f %12.1f%n", scenario.name, scenario.args.length,
+                    rate, 1e9 / rate / scenario.args.length, allocated(parser, scenario) / scenario.args.length,
+                    1e9 / validations / scenario.args.length, 1e9 / planned / scenario.args.length);
+        }
+    }
+
+    private static List<Scenario> scenarios()
+    {
+        final List<Scenario> scenarios = new ArrayList<>();
+
+        // long options, written with and without their value attached, partial names included
+        final Options longOptions = new Options();
+        final List<String> longArgs = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+        {
+            longOptions.addOption(Option.builder().longOpt("option-number-" + i).hasArg().build());
+            longOptions.addOption(Option.builder().longOpt("flag-number-" + i).build());
+        }
+        for (int i = 0; i < 50; i++)
+        {
+            longArgs.add("--option-number-" + i);
+            longArgs.add("value" + i);
+            longArgs.add("--option-number-" + i + "=value" + i);
+            longArgs.add("-flag-number-" + i);
+        }
+        scenarios.add(new Scenario("long", longOptions, longArgs.toArray(new String[0])));
+
+        // short options, clusters and properties
+        final Options shortOptions = new Options();
+        shortOptions.addOption("a", false, "flag a");
+        shortOptions.addOption("b", false, "flag b");
+        shortOptions.addOption("c", false, "flag c");
+        shortOptions.addOption(Option.builder("f").hasArg().build());
+        shortOptions.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        final List<String> shortArgs = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+        {
+            shortArgs.add("-a");
+            shortArgs.add("-abc");
+            shortArgs.add("-f");
+            shortArgs.add("file" + i);
+            shortArgs.add("-Dkey" + i + "=value" + i);
+        }
+        scenarios.add(new Scenario("short", shortOptions, shortArgs.toArray(new String[0])));
+
+        // Java-like properties, one occurrence of the same option each
+        final Options propertyOptions = new Options();
+        propertyOptions.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        final List<String> properties = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+        {
+            properties.add("-Dproperty" + i + "=value" + i);
+        }
+        scenarios.add(new Scenario("properties", propertyOptions, properties.toArray(new String[0])));
+
+        // options with an optional argument followed by other options, each checked for being a negative number
+        final Options optionalOptions = new Options();
+        optionalOptions.addOption(Option.builder("o").longOpt("output").optionalArg(true).numberOfArgs(1).build());
+        optionalOptions.addOption("v", "verbose", false, "verbose output");
+        final List<String> optionalArgs = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+        {
+            optionalArgs.add("-o");
+            optionalArgs.add("-v");
+            optionalArgs.add("--output");
+            optionalArgs.add("-1");
+        }
+        scenarios.add(new Scenario("optional-arg", optionalOptions, optionalArgs.toArray(new String[0])));
+
+        // JVM style options, long names followed by their value and partial long names
+        final Options jvmOptions = new Options();
+        for (final String name : new String[] { "Xmx", "Xms", "Xss", "XX", "Xlog", "verbose", "version", "server",
+                "client", "classpath" })
+        {
+            jvmOptions.addOption(Option.builder().longOpt(name).hasArg().build());
+        }
+        jvmOptions.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        final List<String> jvmArgs = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+        {
+            jvmArgs.add("-Xmx" + i + "g");
+            jvmArgs.add("-Xss512k");
+            jvmArgs.add("-classpath");
+            jvmArgs.add("lib/app" + i + ".jar");
+            jvmArgs.add("-verb");
+            jvmArgs.add("gc");
+        }
+        scenarios.add(new Scenario("jvm", jvmOptions, jvmArgs.toArray(new String[0])));
+
+        // mostly positional arguments
+        final Options fewOptions = new Options();
+        fewOptions.addOption("v", "verbose", false, "verbose output");
+        final List<String> positional = new ArrayList<>();
+        positional.add("-v");
+        for (int i = 0; i < 200; i++)
+        {
+            positional.add("file" + i + ".txt");
+        }
+        scenarios.add(new Scenario("positional", fewOptions, positional.toArray(new String[0])));
+
+        // an option taking an unlimited number of values, given a long list of files
+        final Options inputOptions = new Options();
+        inputOptions.addOption(Option.builder("i").longOpt("inputs").hasArgs().build());
+        inputOptions.addOption("v", "verbose", false, "verbose output");
+        final List<String> inputs = new ArrayList<>();
+        inputs.add("--inputs");
+        for (int i = 0; i < 10000; i++)
+        {
+            inputs.add("input" + i + ".dat");
+        }
+        inputs.add("-v");
+        scenarios.add(new Scenario("values", inputOptions, inputs.toArray(new String[0])));
+
+        // a wrapper forwarding its trailing arguments to a child process
+        final List<String> forwarded = new ArrayList<>();
+        forwarded.add("-v");
+        forwarded.add("--");
+        for (int i = 0; i < 10000; i++)
+        {
+            forwarded.add(i % 2 == 0 ? "-child-option" + i : "child-arg" + i);
+        }
+        scenarios.add(new Scenario("pass-through", fewOptions, forwarded.toArray(new String[0])));
+
+        return scenarios;
+    }
+
+    /**
+     * Parses or validates the command line of the scenario for the
+     * specified time and returns the number of parses per second.
+     */
+    private static double run(final DefaultParser parser, final Scenario scenario, final double seconds,
+                              final int mode) throws ParseException
+    {
+        final ParsePlanCache plans = new ParsePlanCache(scenario.options, 16);
+        final ParseContext context = new ParseContext(scenario.options);
+        final long start = System.nanoTime();
+        final long deadline = start + (long) (seconds * 1e9);
+        long parses = 0;
+        long now;
+        do
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                if (mode == VALIDATE)
+                {
+                    parser.validate(context, scenario.args, false);
+                }
+                else if (mode == PLAN)
+                {
+                    parser.parse(plans, scenario.args);
+                }
+                else
+                {
+                    parser.parse(scenario.options, scenario.args);
+                }
+            }
+            parses += 100;
+            now = System.nanoTime();
+        }
+        while (now < deadline);
+
+        return parses * 1e9 / (now - start);
+    }
+
+    /**
+     * Returns the number of bytes allocated by a parse of the command line
+     * of the scenario, or NaN if the JVM doesn't count the allocations.
+     */
+    private static double allocated(final CommandLineParser parser, final Scenario scenario) throws ParseException
+    {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+        {
+            return Double.NaN;
+        }
+
+        final com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        final long thread = Thread.currentThread().getId();
+        final int parses = 1000;
+        final long before = counter.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < parses; i++)
+        {
+            parser.parse(scenario.options, scenario.args);
+        }
+        return (double) (counter.getThreadAllocatedBytes(thread) - before) / parses;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Measures parsing and reading back an option repeated up to 10^5 times
+ * (<code>-I path</code> and <code>-Dkey=value</code> lists). The time per
+ * repetition should stay flat as the number of repetitions grows.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.RepeatedOptionBenchmark [reads]</code>,
+ * <code>reads</code> being the number of times the values are read after each parse.
+ */
+public class RepeatedOptionBenchmark
+{
+    public static void main(final String[] args) throws Exception
+    {
+        final int reads = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        final Options options = new Options();
+        options.addOption(Option.builder("I").hasArg().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+
+        final CommandLineParser parser = new DefaultParser();
+
+        // warm up
+        for (int i = 0; i < 5; i++)
+        {
+            run(parser, options, 100000, reads);
+        }
+
+        System.out.printf("%12s %16s %16s%n", "repetitions", "parse ns/rep", "read ns/rep");
+        for (int repetitions = 1000; repetitions <= 100000; repetitions *= 10)
+        {
+            // keep the best of a few runs to leave out the garbage collections
+            final double[] times = run(parser, options, repetitions, reads);
+            for (int i = 0; i < 4; i++)
+            {
+                final double[] again = run(parser, options, repetitions, reads);
+                times[0] = Math.min(times[0], again[0]);
+                times[1] = Math.min(times[1], again[1]);
+            }
+            System.out.printf("%12d %16.1f %16.1f%n", repetitions, times[0], times[1]);
+        }
+    }
+
+    /**
+     * Parses a command line repeating -I and -D the specified number of
+     * times each and reads their values back, returning the parse and read
+     * times per repetition.
+     */
+    private static double[] run(final CommandLineParser parser, final Options options, final int repetitions,
+                                final int reads) throws Exception
+    {
+        final String[] arguments = new String[3 * repetitions];
+        for (int i = 0; i < repetitions; i++)
+        {
+            arguments[3 * i] = "-I";
+            arguments[3 * i + 1] = "/usr/include/path" + i;
+            arguments[3 * i + 2] = "-Dkey" + i + "=value" + i;
+        }
+
+        final long start = System.nanoTime();
+        final CommandLine cmd = parser.parse(options, arguments);
+        final long parsed = System.nanoTime();
+
+        long check = 0;
+        for (int i = 0; i < reads; i++)
+        {
+            check += cmd.getOptionValues("I").size();
+            check += cmd.getOptionValue("I").length();
+            check += cmd.getOptionProperties("D").size();
+            check += cmd.hasOption('D') ? 1 : 0;
+        }
+        final long read = System.nanoTime();
+
+        if (check != (long) reads * (2L * repetitions + "/usr/include/path0".length() + 1))
+        {
+            throw new IllegalStateException("unexpected values: " + check);
+        }
+
+        return new double[] { (double) (parsed - start) / repetitions, (double) (read - parsed) / repetitions / reads };
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.cli.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.TokenCache;
+
+/**
+ * Measures the time per token of {@link DefaultParser} with and without a
+ * {@link TokenCache}, on command lines drawn from a realistic distribution:
+ * a few options used in almost every command line, a long tail of options
+ * used rarely (Zipf distributed), and arguments, file names and properties
+ * that mostly differ from one command line to the next.
+ * <p>
+ * Not a unit test; run it with <code>java -cp ... org.apache.commons.cli.bench.TokenCacheBenchmark [seconds] [cache size]</code>.
+ */
+public class TokenCacheBenchmark
+{
+    public static void main(final String[] args) throws Exception
+    {
+        final double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        final Options options = new Options();
+        final List<String> vocabulary = new ArrayList<>();
+        options.addOption("v", "verbose", false, "verbose output");
+        options.addOption("q", "quiet", false, "no output");
+        options.addOption(Option.builder("f").longOpt("format").hasArg().build());
+        options.addOption(Option.builder("o").longOpt("output").hasArg().build());
+        options.addOption(Option.builder("D").hasArgs().valueSeparator().build());
+        options.addOption(Option.builder().longOpt("Xmx").hasArg().build());
+        options.addOption(Option.builder().longOpt("Xss").hasArg().build());
+        vocabulary.add("--verbose");
+        vocabulary.add("--format=json");
+        vocabulary.add("-Xmx4g");
+        vocabulary.add("-v");
+        vocabulary.add("--format=text");
+        vocabulary.add("-q");
+        vocabulary.add("-Xss512k");
+        vocabulary.add("--quiet");
+        vocabulary.add("-Dfile.encoding=UTF-8");
+        vocabulary.add("-Xmx512m");
+        for (int i = 0; i < 40; i++)
+        {
+            options.addOption(Option.builder().longOpt("feature-" + i).build());
+            options.addOption(Option.builder().longOpt("level-" + i).hasArg().build());
+            vocabulary.add("--feature-" + i);
+            vocabulary.add("--level-" + i + "=" + i % 4);
+        }
+
+        // Zipf distribution of the vocabulary
+        final double[] cumulative = new double[vocabulary.size()];
+        double total = 0;
+        for (int i = 0; i < cumulative.length; i++)
+        {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+
+        final Random random = new Random(42);
+        final String[][] commandLines = new String[1000][];
+        long tokens = 0;
+        for (int c = 0; c < commandLines.length; c++)
+        {
+            final List<String> line = new ArrayList<>();
+            final int count = 4 + random.nextInt(12);
+            for (int i = 0; i < count; i++)
+            {
+                final int kind = random.nextInt(10);
+                if (kind == 0)
+                {
+                    line.add("-Duser.id=" + random.nextInt(1000000));
+                }
+                else if (kind == 1)
+                {
+                    line.add("--output=/tmp/out-" + random.nextInt(1000000) + ".log");
+                }
+                else
+                {
+                    final double x = random.nextDouble() * total;
+                    int word = 0;
+                    while (cumulative[word] < x)
+                    {
+                        word++;
+                    }
+                    line.add(vocabulary.get(word));
+                }
+            }
+            line.add("input-" + c + ".dat");
+            commandLines[c] = line.toArray(new String[0]);
+            tokens += commandLines[c].length;
+        }
+
+        final DefaultParser plain = new DefaultParser();
+        final TokenCache cache = new TokenCache(options, size);
+        final DefaultParser cached = new DefaultParser(true, cache);
+
+        // warm up
+        run(plain, options, commandLines, seconds / 2);
+        run(cached, options, commandLines, seconds / 2);
+
+        final long hits = cache.getHitCount();
+        final long misses = cache.getMissCount();
+        final double plainRate = run(plain, options, commandLines, seconds);
+        final double cachedRate = run(cached, options, commandLines, seconds);
+        final double hitRate = (double) (cache.getHitCount() - hits)
+                / (cache.getHitCount() - hits + cache.getMissCount() - misses);
+
+        System.out.printf("%d command lines, %.1f tokens each, %d cache slots%n", commandLines.length,
+                (double) tokens / commandLines.length, cache.getMaximumSize());
+        System.out.printf("%-12s %12s %10s%n", "parser", "ns/token", "hit rate");
+        System.out.printf("%-12s %12.1f %10s%n", "uncached", 1e9 / plainRate / tokens, "-");
+        System.out.printf("%-12s %12.1f %9.1f%%%n", "cached", 1e9 / cachedRate / tokens, 100 * hitRate);
+    }
+
+    /**
+     * Parses all the command lines for the specified time and returns the
+     * number of rounds per second.
+     */
+    private static double run(final DefaultParser parser, final Options options, final String[][] commandLines,
+                              final double seconds) throws ParseException
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + (long) (seconds * 1e9);
+        long rounds = 0;
+        long now;
+        do
+        {
+            for (final String[] commandLine : commandLines)
+            {
+                parser.parse(options, commandLine);
+            }
+            rounds++;
+            now = System.nanoTime();
+        }
+        while (now < deadline);
+
+        return rounds * 1e9 / (now - start);
+    }
+}